@@ -0,0 +1,25 @@
+package com.demotree;
+
+import android.app.Application;
+import android.os.AsyncTask;
+
+import com.asion.pulltorefresh.RefreshView;
+import com.clibrary.StarView;
+
+public class DemoApplication extends Application {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // 在后台线程中提前读取上次更新时间、解码星星图片，加载 activity_main 时不再读取磁盘或解码图片
+        AsyncTask.THREAD_POOL_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                RefreshView.preload(DemoApplication.this);
+                int starSize = Math.round(25 * getResources().getDisplayMetrics().density);
+                StarView.preload(DemoApplication.this, R.mipmap.ic_launcher,
+                        com.clibrary.R.mipmap.ic_star_yellow_normal, starSize, starSize);
+            }
+        });
+    }
+}
@@ -6,24 +6,36 @@ import android.support.annotation.NonNull;
 import android.support.design.widget.BottomNavigationView;
 import android.support.v7.app.AppCompatActivity;
 import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
+import android.view.LayoutInflater;
 import android.view.MenuItem;
-import android.widget.ArrayAdapter;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
 import android.widget.ListView;
 import android.widget.TextView;
+import com.asion.pulltorefresh.AbsListViewUpdateCallback;
+import com.asion.pulltorefresh.ListDiffer;
+import com.asion.pulltorefresh.RefreshCall;
+import com.asion.pulltorefresh.RefreshPolicy;
 import com.asion.pulltorefresh.RefreshView;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 public class MainActivity extends AppCompatActivity {
 
     private TextView mTextMessage;
     RefreshView refreshableView;
-    ArrayAdapter<String> adapter;
+    ItemAdapter adapter;
+    ListDiffer<String> listDiffer;
     ListView listView;
     RecyclerView recyclerview;
     private static int NUM = 30;
     String[] items = new String[NUM];
+    private int refreshCount; // 下拉刷新的次数，只在刷新线程中使用
 
     private BottomNavigationView.OnNavigationItemSelectedListener mOnNavigationItemSelectedListener
             = new BottomNavigationView.OnNavigationItemSelectedListener() {
@@ -61,14 +73,66 @@ public class MainActivity extends AppCompatActivity {
         refreshableView = (RefreshView) findViewById(R.id.refreshable_view);
 
         listView = (ListView) findViewById(R.id.list_view);
-        adapter = new ArrayAdapter<>(this, android.R.layout.simple_list_item_1, items);
+        adapter = new ItemAdapter();
+        listDiffer = new ListDiffer<>(new AbsListViewUpdateCallback(listView, adapter), ITEM_CALLBACK);
+        // 初始数据很少，直接在主线程中比较并应用
+        listDiffer.calculate(Arrays.asList(items)).run();
         listView.setAdapter(adapter);
-        refreshableView.setOnRefreshListener(new RefreshView.PullToRefreshListener() {
+        refreshableView.setOnRefreshListener(new RefreshView.OnRefreshListener() {
             @Override
-            public void onRefresh() {
+            public void onRefresh(RefreshCall call) {
                 SystemClock.sleep(3000);
-                refreshableView.finishRefreshing();
+                // 在刷新线程中生成新数据并比较，下拉头隐藏时只插入新的一项
+                List<String> newItems = new ArrayList<>(listDiffer.getList());
+                newItems.add(0, "新列表项" + (++refreshCount));
+                call.complete(listDiffer.calculate(newItems));
             }
         }, 0);
+        // 10 秒内重复下拉不刷新，数据超过一小时后打开界面时自动在后台刷新
+        refreshableView.setRefreshPolicy(new RefreshPolicy(10 * 1000, RefreshView.ONE_HOUR, true));
+    }
+
+    private static final DiffUtil.ItemCallback<String> ITEM_CALLBACK = new DiffUtil.ItemCallback<String>() {
+        @Override
+        public boolean areItemsTheSame(String oldItem, String newItem) {
+            return oldItem.equals(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(String oldItem, String newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    /**
+     * 从 {@link ListDiffer} 中读取数据的列表适配器
+     */
+    class ItemAdapter extends BaseAdapter {
+
+        @Override
+        public int getCount() {
+            return listDiffer.getItemCount();
+        }
+
+        @Override
+        public String getItem(int position) {
+            return listDiffer.getItem(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            TextView view = (TextView) convertView;
+            if (view == null) {
+                view = (TextView) LayoutInflater.from(parent.getContext())
+                        .inflate(android.R.layout.simple_list_item_1, parent, false);
+            }
+            view.setText(getItem(position));
+            return view;
+        }
     }
 }
@@ -0,0 +1,89 @@
+package com.asion.pulltorefresh;
+
+import android.app.Activity;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.ListView;
+
+import com.demotree.benchmark.Benchmark;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+/**
+ * RefreshView 热点路径的基准测试：一次完整的下拉手势和上次更新时间的刷新
+ * 下拉距离不超过下拉头高度，松开后只回滚不刷新；动画时长设为 0，只测量拖动本身
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class RefreshViewBenchmark {
+
+    // 拖动手势中 MOVE 事件的数量
+    private static final int MOVE_COUNT = 10;
+
+    private RefreshView refreshView;
+    private ListView listView;
+    private MotionEvent[] drag;
+
+    @Before
+    public void setUp() {
+        Activity activity = Robolectric.setupActivity(Activity.class);
+        refreshView = new RefreshView(activity, null);
+        listView = new ListView(activity);
+        refreshView.addView(listView, new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        refreshView.setHeaderAnimationDuration(0);
+        activity.setContentView(refreshView);
+        refreshView.measure(View.MeasureSpec.makeMeasureSpec(480, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(800, View.MeasureSpec.EXACTLY));
+        refreshView.layout(0, 0, 480, 800);
+
+        // 每个 MOVE 下移 8 像素，总距离在阻力作用下小于下拉头高度
+        drag = new MotionEvent[MOVE_COUNT + 2];
+        drag[0] = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 100, 100, 0);
+        for (int i = 1; i <= MOVE_COUNT; i++) {
+            drag[i] = MotionEvent.obtain(0, i * 16, MotionEvent.ACTION_MOVE, 100, 100 + i * 8, 0);
+        }
+        drag[MOVE_COUNT + 1] = MotionEvent.obtain(0, (MOVE_COUNT + 1) * 16, MotionEvent.ACTION_UP, 100, 100 + MOVE_COUNT * 8, 0);
+    }
+
+    @After
+    public void tearDown() {
+        for (MotionEvent event : drag) {
+            event.recycle();
+        }
+    }
+
+    /**
+     * 每次调用是一次完整的下拉手势：DOWN、{@link #MOVE_COUNT} 个 MOVE 和 UP
+     */
+    @Test
+    public void onTouchDrag() {
+        Benchmark.measure("refreshView.onTouch.drag", new Runnable() {
+            @Override
+            public void run() {
+                for (MotionEvent event : drag) {
+                    refreshView.onTouch(listView, event);
+                }
+            }
+        });
+    }
+
+    @Test
+    public void refreshUpdatedAtValue() {
+        refreshView.ensureHeader();
+        Benchmark.measure("refreshView.refreshUpdatedAtValue", new Runnable() {
+            @Override
+            public void run() {
+                refreshView.refreshUpdatedAtValue();
+            }
+        });
+    }
+}
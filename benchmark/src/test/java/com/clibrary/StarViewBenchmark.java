@@ -0,0 +1,119 @@
+package com.clibrary;
+
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+
+import com.demotree.benchmark.Benchmark;
+import com.demotree.benchmark.NullCanvas;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+/**
+ * StarView 热点路径的基准测试：onDraw（三种绘制方式）、onMeasure 和一次完整的拖动评分手势
+ * 与 StarView 在同一个包中，可以直接调用 protected 的 onDraw 和 onMeasure
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27)
+public class StarViewBenchmark {
+
+    // 拖动手势中 MOVE 事件的数量
+    private static final int MOVE_COUNT = 8;
+
+    private final NullCanvas canvas = new NullCanvas();
+    private MotionEvent[] drag;
+
+    @Before
+    public void setUp() {
+        // 一次从第一颗星星拖到最后一颗星星的手势，事件提前创建，不计入测量
+        drag = new MotionEvent[MOVE_COUNT + 2];
+        drag[0] = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, 5, 10, 0);
+        for (int i = 1; i <= MOVE_COUNT; i++) {
+            drag[i] = MotionEvent.obtain(0, i * 16, MotionEvent.ACTION_MOVE, 5 + i * 30, 10, 0);
+        }
+        drag[MOVE_COUNT + 1] = MotionEvent.obtain(0, (MOVE_COUNT + 1) * 16, MotionEvent.ACTION_UP, 5 + MOVE_COUNT * 30, 10, 0);
+    }
+
+    @After
+    public void tearDown() {
+        for (MotionEvent event : drag) {
+            event.recycle();
+        }
+    }
+
+    private StarView createStarView(String renderer) {
+        AttributeSet attrs = Robolectric.buildAttributeSet()
+                .addAttribute(R.attr.star_max, "10")
+                .addAttribute(R.attr.star_rating, "6.5")
+                .addAttribute(R.attr.star_width, "24dp")
+                .addAttribute(R.attr.star_height, "24dp")
+                .addAttribute(R.attr.space_width, "4dp")
+                .addAttribute(R.attr.star_renderer, renderer)
+                .build();
+        StarView view = new StarView(RuntimeEnvironment.application, attrs);
+        int spec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        view.measure(spec, spec);
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+        return view;
+    }
+
+    @Test
+    public void onDrawBitmap() {
+        measureDraw("starView.onDraw.bitmap", createStarView("bitmap"));
+    }
+
+    @Test
+    public void onDrawVector() {
+        measureDraw("starView.onDraw.vector", createStarView("vector"));
+    }
+
+    @Test
+    public void onDrawTiled() {
+        measureDraw("starView.onDraw.tiled", createStarView("tiled"));
+    }
+
+    private void measureDraw(String name, final StarView view) {
+        Benchmark.measure(name, new Runnable() {
+            @Override
+            public void run() {
+                view.onDraw(canvas);
+            }
+        });
+    }
+
+    @Test
+    public void onMeasure() {
+        final StarView view = createStarView("bitmap");
+        final int widthSpec = View.MeasureSpec.makeMeasureSpec(1000, View.MeasureSpec.AT_MOST);
+        final int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        Benchmark.measure("starView.onMeasure", new Runnable() {
+            @Override
+            public void run() {
+                view.onMeasure(widthSpec, heightSpec);
+            }
+        });
+    }
+
+    /**
+     * 每次调用是一次完整的拖动手势：DOWN、{@link #MOVE_COUNT} 个 MOVE 和 UP
+     */
+    @Test
+    public void onTouchEventDrag() {
+        final StarView view = createStarView("bitmap");
+        Benchmark.measure("starView.onTouchEvent.drag", new Runnable() {
+            @Override
+            public void run() {
+                for (MotionEvent event : drag) {
+                    view.onTouchEvent(event);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,156 @@
+package com.demotree.benchmark;
+
+import org.junit.Assert;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Properties;
+
+/**
+ * 基准测试的测量工具
+ * 在当前线程中重复执行被测代码，记录每次调用的平均耗时和平均分配的字节数，并与 baseline.properties 中的基线比较。
+ * 分配的字节数通过 {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} 统计，只包括当前线程的分配。
+ * 基线文件中每个测量项有两个键：name.ns 为每次调用的耗时上限（纳秒），name.bytes 为每次调用分配的字节数上限。
+ * 基线必须是在参考机器上通过 -PupdateBaseline=true 实际测量的结果，还没有基线的测量项只记录结果，不做比较。
+ */
+public final class Benchmark {
+
+    private static final int WARMUP_ITERATIONS = 2000;
+    private static final int MEASURE_ITERATIONS = 10000;
+
+    /**
+     * 测量结果
+     */
+    public static final class Result {
+        public final String name;
+        public final long nanosPerCall;
+        public final long bytesPerCall;
+
+        Result(String name, long nanosPerCall, long bytesPerCall) {
+            this.name = name;
+            this.nanosPerCall = nanosPerCall;
+            this.bytesPerCall = bytesPerCall;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + nanosPerCall + " ns/call, " + bytesPerCall + " bytes/call";
+        }
+    }
+
+    private Benchmark() {
+    }
+
+    /**
+     * 使用默认的次数测量并与基线比较
+     */
+    public static Result measure(String name, Runnable body) {
+        return measure(name, WARMUP_ITERATIONS, MEASURE_ITERATIONS, body);
+    }
+
+    /**
+     * 先预热，再测量指定次数，最后与基线比较，超出阈值时测试失败
+     */
+    public static Result measure(String name, int warmup, int iterations, Runnable body) {
+        for (int i = 0; i < warmup; i++) {
+            body.run();
+        }
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threadBean.isThreadAllocatedMemoryEnabled()) {
+            threadBean.setThreadAllocatedMemoryEnabled(true);
+        }
+        long threadId = Thread.currentThread().getId();
+        long startBytes = threadBean.getThreadAllocatedBytes(threadId);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            body.run();
+        }
+        long elapsed = System.nanoTime() - startTime;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - startBytes;
+        // 统计本身的少量分配被平均到每次调用后会向下取整为 0
+        Result result = new Result(name, elapsed / iterations, allocated / iterations);
+        System.out.println("[benchmark] " + result);
+        check(result);
+        return result;
+    }
+
+    private static synchronized void check(Result result) {
+        File resultsFile = new File(System.getProperty("benchmark.results", "build/benchmark/results.properties"));
+        Properties results = load(resultsFile);
+        results.setProperty(result.name + ".ns", String.valueOf(result.nanosPerCall));
+        results.setProperty(result.name + ".bytes", String.valueOf(result.bytesPerCall));
+        store(results, resultsFile, "latest benchmark results");
+
+        File baselineFile = new File(System.getProperty("benchmark.baseline", "baseline.properties"));
+        Properties baseline = load(baselineFile);
+        if (Boolean.parseBoolean(System.getProperty("benchmark.update", "false"))) {
+            baseline.setProperty(result.name + ".ns", String.valueOf(result.nanosPerCall));
+            baseline.setProperty(result.name + ".bytes", String.valueOf(result.bytesPerCall));
+            store(baseline, baselineFile, "benchmark baseline, regenerate with -PupdateBaseline=true");
+            return;
+        }
+        String ns = baseline.getProperty(result.name + ".ns");
+        String bytes = baseline.getProperty(result.name + ".bytes");
+        if (ns == null || bytes == null) {
+            System.out.println("[benchmark] " + result.name + " has no baseline, run with -PupdateBaseline=true to record one");
+            return;
+        }
+        double tolerance = Double.parseDouble(System.getProperty("benchmark.tolerance", "0.5"));
+        long nanosLimit = (long) (Long.parseLong(ns) * (1 + tolerance));
+        // 分配是确定的，不使用比例，直接与基线比较
+        long bytesLimit = Long.parseLong(bytes);
+        if (result.nanosPerCall > nanosLimit) {
+            Assert.fail(result + " exceeds time baseline " + ns + " ns (limit " + nanosLimit + " ns)");
+        }
+        if (result.bytesPerCall > bytesLimit) {
+            Assert.fail(result + " exceeds allocation baseline " + bytesLimit + " bytes");
+        }
+    }
+
+    private static Properties load(File file) {
+        Properties properties = new Properties();
+        if (file.exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(file);
+                properties.load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("cannot read " + file, e);
+            } finally {
+                close(in);
+            }
+        }
+        return properties;
+    }
+
+    private static void store(Properties properties, File file, String comment) {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IllegalStateException("cannot create " + parent);
+        }
+        OutputStream out = null;
+        try {
+            out = new FileOutputStream(file);
+            properties.store(out, comment);
+        } catch (IOException e) {
+            throw new IllegalStateException("cannot write " + file, e);
+        } finally {
+            close(out);
+        }
+    }
+
+    private static void close(java.io.Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.demotree.benchmark;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+/**
+ * 不做任何绘制的 Canvas
+ * Robolectric 的 Canvas 会把每次绘制记录为字符串，耗时和分配都会掩盖被测代码本身，
+ * 基准测试中使用这个 Canvas，只测量控件自身的绘制逻辑。
+ */
+public class NullCanvas extends Canvas {
+
+    private int saveCount = 1;
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, Rect dst, Paint paint) {
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, Rect src, RectF dst, Paint paint) {
+    }
+
+    @Override
+    public void drawBitmap(Bitmap bitmap, float left, float top, Paint paint) {
+    }
+
+    @Override
+    public void drawPath(Path path, Paint paint) {
+    }
+
+    @Override
+    public void drawRect(float left, float top, float right, float bottom, Paint paint) {
+    }
+
+    @Override
+    public void drawRect(Rect r, Paint paint) {
+    }
+
+    @Override
+    public boolean clipRect(int left, int top, int right, int bottom) {
+        return true;
+    }
+
+    @Override
+    public boolean clipRect(float left, float top, float right, float bottom) {
+        return true;
+    }
+
+    @Override
+    public void translate(float dx, float dy) {
+    }
+
+    @Override
+    public int save() {
+        return saveCount++;
+    }
+
+    @Override
+    public void restore() {
+        saveCount--;
+    }
+
+    @Override
+    public void restoreToCount(int saveCount) {
+        this.saveCount = saveCount;
+    }
+
+    @Override
+    public int getSaveCount() {
+        return saveCount;
+    }
+}
@@ -0,0 +1,131 @@
+package com.asion.pulltorefresh;
+
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+
+/**
+ * 把 {@link ListDiffer} 的差量更新应用到 ListView、GridView 等 AbsListView
+ * AbsListView 没有局部刷新的接口：只有修改时直接重新绑定可见范围内发生变化的Item，其余Item不会重新绑定；
+ * 有插入、删除或移动时只能通知一次数据变化，但会根据这些操作修正第一个可见Item的位置，保持用户看到的内容不跳动；
+ * 列表停在最顶部时不修正，插入到顶部的新数据会直接显示出来。
+ * Adapter 需要从 {@link ListDiffer#getList()} 中读取数据。
+ */
+public class AbsListViewUpdateCallback implements ListDiffer.BatchUpdateCallback {
+
+    private final AbsListView listView;
+    private final BaseAdapter adapter;
+
+    private boolean inBatch; // 是否已经记录了本批操作开始时的滚动位置
+    private boolean structural; // 本批操作中是否有插入、删除或移动
+    private int firstPosition; // 第一个可见Item在数据中的位置，随插入和删除修正，小于 0 表示不需要修正
+    private int firstTop; // 第一个可见Item的上边缘
+    private int changedStart; // 发生修改的最小位置
+    private int changedEnd; // 发生修改的最大位置，不包含
+
+    public AbsListViewUpdateCallback(AbsListView listView, BaseAdapter adapter) {
+        this.listView = listView;
+        this.adapter = adapter;
+    }
+
+    @Override
+    public void onInserted(int position, int count) {
+        begin();
+        structural = true;
+        if (firstPosition >= 0 && position <= firstPosition) {
+            firstPosition += count;
+        }
+    }
+
+    @Override
+    public void onRemoved(int position, int count) {
+        begin();
+        structural = true;
+        if (firstPosition < 0) {
+            return;
+        }
+        if (position + count <= firstPosition) {
+            firstPosition -= count;
+        } else if (position <= firstPosition) {
+            // 第一个可见Item被删除了，停留在删除的位置
+            firstPosition = position;
+        }
+    }
+
+    @Override
+    public void onMoved(int fromPosition, int toPosition) {
+        onRemoved(fromPosition, 1);
+        onInserted(toPosition, 1);
+    }
+
+    @Override
+    public void onChanged(int position, int count, Object payload) {
+        begin();
+        changedStart = Math.min(changedStart, position);
+        changedEnd = Math.max(changedEnd, position + count);
+    }
+
+    @Override
+    public void onBatchEnd() {
+        if (!inBatch) {
+            return;
+        }
+        inBatch = false;
+        if (structural) {
+            adapter.notifyDataSetChanged();
+            if (firstPosition >= 0) {
+                int position = firstPosition + getHeaderCount();
+                if (listView instanceof ListView) {
+                    ((ListView) listView).setSelectionFromTop(position, firstTop);
+                } else {
+                    listView.setSelection(position);
+                }
+            }
+        } else if (changedEnd > changedStart) {
+            rebindChanged();
+        }
+    }
+
+    /**
+     * 记录本批操作开始时的滚动位置
+     */
+    private void begin() {
+        if (inBatch) {
+            return;
+        }
+        inBatch = true;
+        structural = false;
+        changedStart = Integer.MAX_VALUE;
+        changedEnd = Integer.MIN_VALUE;
+        View firstChild = listView.getChildAt(0);
+        firstPosition = listView.getFirstVisiblePosition() - getHeaderCount();
+        firstTop = firstChild != null ? firstChild.getTop() : 0;
+        if (firstChild == null || (firstPosition <= 0 && firstTop >= listView.getPaddingTop())) {
+            // 列表为空或停在最顶部
+            firstPosition = -1;
+        }
+    }
+
+    /**
+     * 重新绑定可见范围内发生修改的Item，Adapter 没有复用传入的View时只能通知数据变化
+     */
+    private void rebindChanged() {
+        int first = listView.getFirstVisiblePosition() - getHeaderCount();
+        for (int i = 0, count = listView.getChildCount(); i < count; i++) {
+            int position = first + i;
+            if (position < changedStart || position >= changedEnd || position >= adapter.getCount()) {
+                continue;
+            }
+            View child = listView.getChildAt(i);
+            if (adapter.getView(position, child, listView) != child) {
+                adapter.notifyDataSetChanged();
+                return;
+            }
+        }
+    }
+
+    private int getHeaderCount() {
+        return listView instanceof ListView ? ((ListView) listView).getHeaderViewsCount() : 0;
+    }
+}
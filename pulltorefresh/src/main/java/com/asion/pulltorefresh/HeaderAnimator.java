@@ -0,0 +1,172 @@
+package com.asion.pulltorefresh;
+
+import android.content.Context;
+import android.support.v4.os.TraceCompat;
+import android.support.v4.view.ViewCompat;
+import android.view.View;
+import android.view.WindowManager;
+import android.view.animation.AnimationUtils;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+/**
+ * 下拉头的动画引擎
+ * 由屏幕刷新的帧回调驱动，每一帧根据已经过去的时间和插值器计算下拉头的位置，
+ * 动画速度只取决于设定的时长，与屏幕刷新率以及线程是否繁忙无关，也不会占用任何工作线程。
+ * 动画可以随时取消，也可以在中途重新指定目标位置。
+ */
+class HeaderAnimator implements Runnable {
+
+    // 默认的动画时长
+    static final long DEFAULT_DURATION = 250;
+
+    /**
+     * 动画作用的对象，读写下拉头当前的偏移量
+     */
+    interface Target {
+        int getHeaderOffset();
+
+        void setHeaderOffset(int offset);
+    }
+
+    /**
+     * 动画正常结束时的回调，被取消或被重新指定目标的动画不会回调
+     */
+    interface OnAnimationEndListener {
+        void onAnimationEnd();
+    }
+
+    /**
+     * 动画的帧统计，动画正常结束时回调，没有设置时不做任何统计
+     */
+    interface OnFrameStatsListener {
+        // duration 为动画时长，frames 为绘制的帧数，droppedFrames 为根据相邻两帧的间隔估算的丢帧数
+        void onFrameStats(long duration, int frames, int droppedFrames);
+    }
+
+    private final View view; // 用于投递帧回调的View
+    private final Target target;
+
+    private Interpolator interpolator = new DecelerateInterpolator();
+    private long duration = DEFAULT_DURATION;
+
+    private int fromOffset; // 动画起始位置
+    private int toOffset; // 动画目标位置
+    private long startTime; // 动画开始时间
+    private boolean running; // 是否正在执行动画
+    private OnAnimationEndListener endListener;
+
+    private OnFrameStatsListener frameStatsListener;
+    private long frameInterval; // 屏幕刷新一帧的时长
+    private long statsStartTime; // 统计开始的时间，中途重新指定目标时不重新开始
+    private long lastFrameTime; // 上一帧的时间
+    private int frameCount; // 已绘制的帧数
+    private int droppedFrames; // 估算的丢帧数
+
+    HeaderAnimator(View view, Target target) {
+        this.view = view;
+        this.target = target;
+    }
+
+    void setDuration(long duration) {
+        this.duration = duration < 0 ? 0 : duration;
+    }
+
+    void setInterpolator(Interpolator interpolator) {
+        this.interpolator = interpolator != null ? interpolator : new DecelerateInterpolator();
+    }
+
+    void setFrameStatsListener(OnFrameStatsListener listener) {
+        frameStatsListener = listener;
+        if (listener != null && frameInterval == 0) {
+            WindowManager windowManager = (WindowManager) view.getContext().getSystemService(Context.WINDOW_SERVICE);
+            float refreshRate = windowManager != null ? windowManager.getDefaultDisplay().getRefreshRate() : 0;
+            frameInterval = Math.max(1, Math.round(1000 / (refreshRate > 0 ? refreshRate : 60f)));
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 从当前位置开始动画到指定位置，如果已有动画在执行，则从当前位置重新指定目标，原来的回调不再执行
+     */
+    void animateTo(int offset, OnAnimationEndListener listener) {
+        endListener = listener;
+        fromOffset = target.getHeaderOffset();
+        toOffset = offset;
+        startTime = AnimationUtils.currentAnimationTimeMillis();
+        if (fromOffset == toOffset || duration == 0) {
+            finish();
+            return;
+        }
+        if (!running) {
+            running = true;
+            statsStartTime = startTime;
+            lastFrameTime = startTime;
+            frameCount = 0;
+            droppedFrames = 0;
+            ViewCompat.postOnAnimation(view, this);
+        }
+    }
+
+    /**
+     * 取消当前动画，下拉头停留在当前位置，且不会回调结束监听
+     */
+    void cancel() {
+        running = false;
+        endListener = null;
+        view.removeCallbacks(this);
+    }
+
+    /**
+     * 立即结束当前动画，下拉头直接移动到目标位置并回调结束监听
+     */
+    void end() {
+        if (running) {
+            finish();
+        }
+    }
+
+    @Override
+    public void run() {
+        if (!running) {
+            return;
+        }
+        TraceCompat.beginSection("RefreshView.headerFrame");
+        long now = AnimationUtils.currentAnimationTimeMillis();
+        if (frameStatsListener != null) {
+            // 两帧之间超过一帧的时长，多出的部分按帧数计为丢帧
+            frameCount++;
+            droppedFrames += Math.max(0, (now - lastFrameTime + frameInterval / 2) / frameInterval - 1);
+            lastFrameTime = now;
+        }
+        long elapsed = now - startTime;
+        float fraction = elapsed >= duration ? 1f : (float) elapsed / duration;
+        if (fraction >= 1f) {
+            finish();
+        } else {
+            float interpolated = interpolator.getInterpolation(fraction);
+            target.setHeaderOffset(fromOffset + Math.round((toOffset - fromOffset) * interpolated));
+            ViewCompat.postOnAnimation(view, this);
+        }
+        TraceCompat.endSection();
+    }
+
+    private void finish() {
+        boolean wasRunning = running;
+        running = false;
+        view.removeCallbacks(this);
+        target.setHeaderOffset(toOffset);
+        OnFrameStatsListener statsListener = frameStatsListener;
+        if (statsListener != null && wasRunning && frameCount > 0) {
+            statsListener.onFrameStats(lastFrameTime - statsStartTime, frameCount, droppedFrames);
+        }
+        OnAnimationEndListener listener = endListener;
+        endListener = null;
+        if (listener != null) {
+            listener.onAnimationEnd();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.asion.pulltorefresh;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.v4.os.TraceCompat;
+import android.support.v7.util.AdapterListUpdateCallback;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
+import android.support.v7.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 列表数据的差量更新
+ * 新旧两份数据在子线程中通过 {@link DiffUtil} 比较，得到最少的插入、删除、移动和修改操作，
+ * 再在主线程中一次性替换数据并把这些操作通知给 Adapter，只有发生变化的Item会被重新绑定，滚动位置和其余Item的状态保持不变。
+ * <p>
+ * 配合下拉刷新使用时，在刷新逻辑中调用 {@link #calculate(List)} 并通过 {@link RefreshCall#complete(Runnable)} 提交，
+ * 差量更新会在下拉头开始隐藏的那一帧中执行；不需要与下拉头同步时可以调用 {@link #submit(List)}。
+ * 数据只能通过这里修改，Adapter 中读取 {@link #getList()} 和 {@link #getItem(int)}。
+ */
+public class ListDiffer<T> {
+
+    /**
+     * 需要在一批操作结束后统一处理的更新目标，例如 ListView 只能在全部操作之后通知一次数据变化
+     */
+    public interface BatchUpdateCallback extends ListUpdateCallback {
+        void onBatchEnd();
+    }
+
+    private final DiffUtil.ItemCallback<T> itemCallback;
+    private final ListUpdateCallback target;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Executor executor = AsyncTask.THREAD_POOL_EXECUTOR; // 执行比较的线程池
+
+    private volatile List<T> list = Collections.emptyList(); // 当前的数据，只在主线程中替换
+    private int submitGeneration; // 异步提交的次数，只有最后一次提交会被应用
+
+    /**
+     * 更新 RecyclerView 的 Adapter
+     */
+    public ListDiffer(RecyclerView.Adapter adapter, DiffUtil.ItemCallback<T> itemCallback) {
+        this(new AdapterListUpdateCallback(adapter), itemCallback);
+    }
+
+    /**
+     * 把操作通知给指定的目标，ListView 可以使用 {@link AbsListViewUpdateCallback}
+     */
+    public ListDiffer(ListUpdateCallback target, DiffUtil.ItemCallback<T> itemCallback) {
+        this.target = target;
+        this.itemCallback = itemCallback;
+    }
+
+    /**
+     * 设置 {@link #submit(List)} 执行比较的线程池，默认使用 {@link AsyncTask#THREAD_POOL_EXECUTOR}
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor != null ? executor : AsyncTask.THREAD_POOL_EXECUTOR;
+    }
+
+    /**
+     * 当前的数据，不可修改
+     */
+    public List<T> getList() {
+        return list;
+    }
+
+    public int getItemCount() {
+        return list.size();
+    }
+
+    public T getItem(int position) {
+        return list.get(position);
+    }
+
+    /**
+     * 在调用的线程中比较当前数据和新数据，返回的更新需要在主线程中执行
+     * 在下拉刷新的回调中调用，比较就会在刷新的线程池中完成
+     *
+     * @param newList 新数据，传入后不能再修改
+     */
+    public Runnable calculate(List<T> newList) {
+        List<T> oldList = list;
+        List<T> snapshot = snapshot(newList);
+        return new Update(oldList, snapshot, diff(oldList, snapshot));
+    }
+
+    /**
+     * 在线程池中比较数据，比较完成后在主线程中立即更新，多次提交时只有最后一次会被应用
+     * 需要在主线程中调用
+     */
+    public void submit(List<T> newList) {
+        final int generation = ++submitGeneration;
+        final List<T> oldList = list;
+        final List<T> snapshot = snapshot(newList);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult result = diff(oldList, snapshot);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation == submitGeneration) {
+                            new Update(oldList, snapshot, result).run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private static <T> List<T> snapshot(List<T> newList) {
+        if (newList == null || newList.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(new ArrayList<>(newList));
+    }
+
+    private DiffUtil.DiffResult diff(final List<T> oldList, final List<T> newList) {
+        TraceCompat.beginSection("ListDiffer.diff");
+        try {
+            return DiffUtil.calculateDiff(new DiffUtil.Callback() {
+                @Override
+                public int getOldListSize() {
+                    return oldList.size();
+                }
+
+                @Override
+                public int getNewListSize() {
+                    return newList.size();
+                }
+
+                @Override
+                public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                    return itemCallback.areItemsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+                }
+
+                @Override
+                public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                    return itemCallback.areContentsTheSame(oldList.get(oldItemPosition), newList.get(newItemPosition));
+                }
+
+                @Override
+                public Object getChangePayload(int oldItemPosition, int newItemPosition) {
+                    return itemCallback.getChangePayload(oldList.get(oldItemPosition), newList.get(newItemPosition));
+                }
+            });
+        } finally {
+            TraceCompat.endSection();
+        }
+    }
+
+    /**
+     * 一次已经计算好的差量更新，在主线程中执行
+     */
+    private final class Update implements Runnable {
+
+        private final List<T> oldList;
+        private final List<T> newList;
+        private final DiffUtil.DiffResult result;
+
+        Update(List<T> oldList, List<T> newList, DiffUtil.DiffResult result) {
+            this.oldList = oldList;
+            this.newList = newList;
+            this.result = result;
+        }
+
+        @Override
+        public void run() {
+            TraceCompat.beginSection("ListDiffer.apply");
+            // 比较期间数据已经被其他更新替换时，比较结果不再适用，只能在主线程中重新比较
+            DiffUtil.DiffResult diffResult = list == oldList ? result : diff(list, newList);
+            list = newList;
+            diffResult.dispatchUpdatesTo(target);
+            if (target instanceof BatchUpdateCallback) {
+                ((BatchUpdateCallback) target).onBatchEnd();
+            }
+            TraceCompat.endSection();
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.asion.pulltorefresh;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.preference.PreferenceManager;
+import android.support.v4.util.SparseArrayCompat;
+
+import java.util.Map;
+
+/**
+ * 基于 SharedPreferences 的上次更新时间存储
+ * 每个 id 的值只在第一次读取时从 SharedPreferences 中加载，之后都从内存中读取；
+ * 写入时先更新内存，再在后台线程中批量写入磁盘，主线程中不会有磁盘写操作。
+ * 键值与旧版本保持一致，升级后之前记录的更新时间仍然有效。
+ * 全局实例会注册内存回调，内存紧张时清空内存中已经写入磁盘的缓存，之后按需重新加载。
+ */
+public class PreferencesUpdatedAtStore implements UpdatedAtStore, ComponentCallbacks2 {
+
+    // 上次更新时间的字符串常量，用于作为 SharedPreferences 的键值
+    private static final String UPDATED_AT = "updated_at";
+    // 延迟写入的时间，期间的多次写入会合并为一次
+    private static final long FLUSH_DELAY = 1000;
+
+    private static PreferencesUpdatedAtStore sInstance;
+    private static Handler sWriteHandler; // 所有实例共用的后台写入线程
+
+    private final Context context;
+    private SharedPreferences preferences;
+    private final SparseArrayCompat<Long> values = new SparseArrayCompat<>(); // 内存中的更新时间
+    private final SparseArrayCompat<Long> pendingValues = new SparseArrayCompat<>(); // 等待写入磁盘的更新时间
+    private boolean flushScheduled; // 是否已安排写入
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            writePendingValues();
+        }
+    };
+
+    /**
+     * 获取使用默认 SharedPreferences 的全局实例
+     */
+    public static synchronized PreferencesUpdatedAtStore getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PreferencesUpdatedAtStore(context);
+            sInstance.context.registerComponentCallbacks(sInstance);
+        }
+        return sInstance;
+    }
+
+    public PreferencesUpdatedAtStore(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public synchronized long get(int id) {
+        Long value = values.get(id);
+        if (value == null) {
+            value = getPreferences().getLong(UPDATED_AT + id, NOT_UPDATED);
+            values.put(id, value);
+        }
+        return value;
+    }
+
+    @Override
+    public synchronized void put(int id, long time) {
+        values.put(id, time);
+        pendingValues.put(id, time);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            getWriteHandler().postDelayed(flushRunnable, FLUSH_DELAY);
+        }
+    }
+
+    /**
+     * 加载 SharedPreferences 并把所有已保存的更新时间读入内存，之后主线程中的 get 不会再读取磁盘
+     * 会阻塞到文件加载完成，需要在后台线程中调用，见 {@link RefreshView#preload(Context)}
+     */
+    public void preload() {
+        Map<String, ?> all = getPreferences().getAll();
+        synchronized (this) {
+            for (Map.Entry<String, ?> entry : all.entrySet()) {
+                String key = entry.getKey();
+                if (!key.startsWith(UPDATED_AT) || !(entry.getValue() instanceof Long)) {
+                    continue;
+                }
+                int id;
+                try {
+                    id = Integer.parseInt(key.substring(UPDATED_AT.length()));
+                } catch (NumberFormatException e) {
+                    // 应用自己的其他键值
+                    continue;
+                }
+                // 已经在内存中的值可能比磁盘中的新
+                if (values.get(id) == null) {
+                    values.put(id, (Long) entry.getValue());
+                }
+            }
+        }
+    }
+
+    /**
+     * 立即在后台线程中写入所有未保存的更新时间，例如在 Activity 的 onStop 中调用
+     */
+    public void flush() {
+        Handler handler = getWriteHandler();
+        handler.removeCallbacks(flushRunnable);
+        handler.post(flushRunnable);
+    }
+
+    /**
+     * 按内存等级释放内存中的缓存：界面不可见或内存紧张时，清除已经写入磁盘的更新时间，
+     * 还未写入磁盘的更新时间会保留并立即安排写入。SharedPreferences 由系统全局缓存，释放这里的引用不会节省内存，因此保留
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level < TRIM_MEMORY_UI_HIDDEN && level != TRIM_MEMORY_RUNNING_CRITICAL) {
+            return;
+        }
+        int released;
+        boolean hasPending;
+        synchronized (this) {
+            released = values.size() - pendingValues.size();
+            hasPending = pendingValues.size() > 0;
+            values.clear();
+            for (int i = 0, size = pendingValues.size(); i < size; i++) {
+                values.put(pendingValues.keyAt(i), pendingValues.valueAt(i));
+            }
+        }
+        if (hasPending) {
+            flush();
+        }
+        RefreshMemoryStats.onStoreTrimmed(level, released);
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    /**
+     * 内存中缓存的更新时间条数
+     */
+    public synchronized int getCachedCount() {
+        return values.size();
+    }
+
+    private synchronized SharedPreferences getPreferences() {
+        if (preferences == null) {
+            preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        }
+        return preferences;
+    }
+
+    /**
+     * 在后台线程中把等待写入的更新时间一次性写入磁盘
+     */
+    private void writePendingValues() {
+        SparseArrayCompat<Long> pending;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pendingValues.size() == 0) {
+                return;
+            }
+            pending = pendingValues.clone();
+        }
+        SharedPreferences.Editor editor = getPreferences().edit();
+        for (int i = 0, size = pending.size(); i < size; i++) {
+            editor.putLong(UPDATED_AT + pending.keyAt(i), pending.valueAt(i));
+        }
+        editor.commit();
+        // 写入完成后才移出等待列表，写入期间内存被清空时 get 仍然能读到这些值，而不是磁盘中的旧值
+        synchronized (this) {
+            for (int i = 0, size = pending.size(); i < size; i++) {
+                int id = pending.keyAt(i);
+                // 写入期间又更新过的值需要等下一次写入
+                if (pending.valueAt(i).equals(pendingValues.get(id))) {
+                    pendingValues.remove(id);
+                }
+            }
+        }
+    }
+
+    private static synchronized Handler getWriteHandler() {
+        if (sWriteHandler == null) {
+            HandlerThread thread = new HandlerThread("UpdatedAtStore", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            sWriteHandler = new Handler(thread.getLooper());
+        }
+        return sWriteHandler;
+    }
+}
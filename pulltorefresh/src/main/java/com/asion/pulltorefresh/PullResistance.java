@@ -0,0 +1,88 @@
+package com.asion.pulltorefresh;
+
+/**
+ * 下拉的阻力曲线
+ * 根据下拉头当前已经下拉的距离，决定手指每移动 1px 时下拉头移动多少，
+ * 拖动过程中逐个触摸采样点累加，因此同一条曲线也适用于多指切换和嵌套滚动。
+ */
+public abstract class PullResistance {
+
+    /**
+     * 获取当前的阻力系数
+     *
+     * @param pulledDistance 下拉头当前已经下拉的距离
+     * @param headerHeight   下拉头的高度
+     * @return 手指每移动 1px 时下拉头移动的距离
+     */
+    public abstract float getFactor(float pulledDistance, int headerHeight);
+
+    /**
+     * 手指向上推回下拉头时的阻力系数，默认与下拉时相同
+     * 下拉越远阻力越大的曲线应保证这里不为 0，否则下拉头超出范围后无法推回
+     */
+    public float getReturnFactor(float pulledDistance, int headerHeight) {
+        return getFactor(pulledDistance, headerHeight);
+    }
+
+    /**
+     * 下拉距离的上限，默认没有上限
+     */
+    public float getMaxDistance(int headerHeight) {
+        return Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * 根据一个触摸采样点的手指移动距离计算新的下拉距离，结果限制在 0 到 {@link #getMaxDistance(int)} 之间
+     * 阻力系数只在采样点的起点计算一次，单个采样点移动很远时由上限保证不会越界
+     *
+     * @param pulledDistance 下拉头当前已经下拉的距离
+     * @param dy             手指移动的距离，向下为正
+     * @param headerHeight   下拉头的高度
+     * @return 新的下拉距离
+     */
+    public float pull(float pulledDistance, float dy, int headerHeight) {
+        float factor = dy < 0 ? getReturnFactor(pulledDistance, headerHeight) : getFactor(pulledDistance, headerHeight);
+        float distance = pulledDistance + dy * factor;
+        return Math.max(0f, Math.min(distance, getMaxDistance(headerHeight)));
+    }
+
+    /**
+     * 固定阻力，下拉头移动的距离为手指移动距离乘以 factor，默认为 0.5，即手指移动距离的一半
+     */
+    public static PullResistance linear(final float factor) {
+        return new PullResistance() {
+            @Override
+            public float getFactor(float pulledDistance, int headerHeight) {
+                return factor;
+            }
+        };
+    }
+
+    /**
+     * 逐渐增大的阻力，下拉得越远越难拉动，下拉距离不会超过 maxMultiple 倍的下拉头高度
+     */
+    public static PullResistance damped(final float factor, final float maxMultiple) {
+        return new PullResistance() {
+            @Override
+            public float getFactor(float pulledDistance, int headerHeight) {
+                float maxDistance = headerHeight * maxMultiple;
+                if (maxDistance <= 0) {
+                    return factor;
+                }
+                return factor * Math.max(0f, 1f - pulledDistance / maxDistance);
+            }
+
+            @Override
+            public float getReturnFactor(float pulledDistance, int headerHeight) {
+                // 向上推回时不衰减，到达上限后仍然可以推回
+                return factor;
+            }
+
+            @Override
+            public float getMaxDistance(int headerHeight) {
+                float maxDistance = headerHeight * maxMultiple;
+                return maxDistance > 0 ? maxDistance : Float.POSITIVE_INFINITY;
+            }
+        };
+    }
+}
@@ -0,0 +1,129 @@
+package com.asion.pulltorefresh;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一次下拉刷新的句柄
+ * 刷新逻辑执行完成后调用 {@link #complete()}，下拉头会自动隐藏并记录更新时间；
+ * 也可以调用 {@link #cancel()} 取消本次刷新。所有方法都可以在任意线程中调用，只有第一次结束操作会生效。
+ */
+public final class RefreshCall {
+
+    private static final int STATE_RUNNING = 0; // 正在刷新
+    private static final int STATE_COMPLETED = 1; // 刷新完成
+    private static final int STATE_CANCELLED = 2; // 刷新被取消
+    private static final int STATE_TIMED_OUT = 3; // 刷新超时
+    private static final int STATE_FAILED = 4; // 刷新失败
+
+    /**
+     * 刷新结束时的回调，在结束刷新的线程中调用
+     */
+    interface OnFinishListener {
+        void onFinish(RefreshCall call);
+    }
+
+    private final AtomicInteger state = new AtomicInteger(STATE_RUNNING);
+    private final OnFinishListener listener;
+    private volatile Runnable update; // 刷新完成后需要在主线程中执行的数据更新
+
+    RefreshCall(OnFinishListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * 标记刷新完成
+     *
+     * @return 本次调用是否结束了刷新，刷新已经结束时返回 false
+     */
+    public boolean complete() {
+        return finish(STATE_COMPLETED, null);
+    }
+
+    /**
+     * 标记刷新完成，并在主线程中执行数据更新
+     * 下拉刷新时更新会在下拉头开始隐藏的那一帧中执行，与隐藏动画的第一帧一起布局和绘制；加载更多时立即执行。
+     * 通常传入 {@link ListDiffer#calculate(java.util.List)} 的结果，刷新被取消或超时时更新不会执行
+     *
+     * @return 本次调用是否结束了刷新，刷新已经结束时返回 false
+     */
+    public boolean complete(Runnable update) {
+        return finish(STATE_COMPLETED, update);
+    }
+
+    /**
+     * 取消刷新，下拉头会隐藏，但不会记录更新时间
+     *
+     * @return 本次调用是否结束了刷新，刷新已经结束时返回 false
+     */
+    public boolean cancel() {
+        return finish(STATE_CANCELLED, null);
+    }
+
+    /**
+     * 标记刷新失败，下拉头会隐藏，但不会记录更新时间；加载更多时底部会显示点击重试
+     *
+     * @return 本次调用是否结束了刷新，刷新已经结束时返回 false
+     */
+    public boolean fail() {
+        return finish(STATE_FAILED, null);
+    }
+
+    boolean timeout() {
+        return finish(STATE_TIMED_OUT, null);
+    }
+
+    /**
+     * 刷新是否已经结束，包括完成、取消和超时
+     */
+    public boolean isDone() {
+        return state.get() != STATE_RUNNING;
+    }
+
+    /**
+     * 刷新是否已经成功完成
+     */
+    public boolean isCompleted() {
+        return state.get() == STATE_COMPLETED;
+    }
+
+    /**
+     * 刷新是否被取消或超时，耗时的刷新逻辑可以在执行过程中检查此值以尽早退出
+     */
+    public boolean isCancelled() {
+        int current = state.get();
+        return current == STATE_CANCELLED || current == STATE_TIMED_OUT;
+    }
+
+    /**
+     * 刷新是否失败，超时也视为失败
+     */
+    public boolean isFailed() {
+        int current = state.get();
+        return current == STATE_FAILED || current == STATE_TIMED_OUT;
+    }
+
+    /**
+     * 刷新是否因为超时而结束
+     */
+    public boolean isTimedOut() {
+        return state.get() == STATE_TIMED_OUT;
+    }
+
+    /**
+     * 取出完成时提交的数据更新，只能取出一次
+     */
+    Runnable takeUpdate() {
+        Runnable pending = update;
+        update = null;
+        return pending;
+    }
+
+    private boolean finish(int newState, Runnable pendingUpdate) {
+        if (state.compareAndSet(STATE_RUNNING, newState)) {
+            update = pendingUpdate;
+            listener.onFinish(this);
+            return true;
+        }
+        return false;
+    }
+}
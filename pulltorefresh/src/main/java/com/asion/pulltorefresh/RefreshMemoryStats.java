@@ -0,0 +1,78 @@
+package com.asion.pulltorefresh;
+
+/**
+ * 下拉刷新控件的内存统计
+ * {@link RefreshView} 在界面不可见、内存紧张或离开窗口时会释放已加载的下拉头，下一次下拉时重新加载；
+ * {@link PreferencesUpdatedAtStore} 在内存紧张时会写入未保存的更新时间并清空内存中的缓存。
+ * 这里记录当前的占用和累计的释放次数，并在释放时回调监听器。
+ */
+public final class RefreshMemoryStats {
+
+    // 因为离开窗口而释放时回调的内存等级，ComponentCallbacks2 中的等级都大于 0
+    public static final int LEVEL_DETACHED = 0;
+
+    /**
+     * 释放内存时的回调，在主线程中调用
+     */
+    public interface OnReleaseListener {
+        // 释放了一个下拉头，level 为 ComponentCallbacks2 中的内存等级或 LEVEL_DETACHED
+        void onHeaderReleased(int level);
+
+        // 清空了上次更新时间的内存缓存，releasedEntries 为清除的条数
+        void onStoreTrimmed(int level, int releasedEntries);
+    }
+
+    private static int sInflatedHeaders; // 当前已加载的下拉头数量
+    private static int sHeaderReleaseCount; // 累计释放的下拉头数量
+    private static int sStoreTrimCount; // 累计清空存储缓存的次数
+    private static OnReleaseListener sListener;
+
+    private RefreshMemoryStats() {
+    }
+
+    public static synchronized void setOnReleaseListener(OnReleaseListener listener) {
+        sListener = listener;
+    }
+
+    /**
+     * 当前已加载布局的下拉头数量
+     */
+    public static synchronized int getInflatedHeaderCount() {
+        return sInflatedHeaders;
+    }
+
+    public static synchronized int getHeaderReleaseCount() {
+        return sHeaderReleaseCount;
+    }
+
+    public static synchronized int getStoreTrimCount() {
+        return sStoreTrimCount;
+    }
+
+    static synchronized void onHeaderInflated() {
+        sInflatedHeaders++;
+    }
+
+    static void onHeaderReleased(int level) {
+        OnReleaseListener listener;
+        synchronized (RefreshMemoryStats.class) {
+            sInflatedHeaders--;
+            sHeaderReleaseCount++;
+            listener = sListener;
+        }
+        if (listener != null) {
+            listener.onHeaderReleased(level);
+        }
+    }
+
+    static void onStoreTrimmed(int level, int releasedEntries) {
+        OnReleaseListener listener;
+        synchronized (RefreshMemoryStats.class) {
+            sStoreTrimCount++;
+            listener = sListener;
+        }
+        if (listener != null) {
+            listener.onStoreTrimmed(level, releasedEntries);
+        }
+    }
+}
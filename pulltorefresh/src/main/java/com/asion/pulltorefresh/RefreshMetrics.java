@@ -0,0 +1,34 @@
+package com.asion.pulltorefresh;
+
+/**
+ * 下拉刷新的性能指标
+ * 通过 {@link RefreshView#setRefreshMetrics(RefreshMetrics)} 设置，没有设置时不会读取任何时间，也不会做任何统计。
+ * 所有回调都在主线程中调用，时长的单位为毫秒，实现中应尽快返回，例如只把数据交给自己的上报队列。
+ */
+public interface RefreshMetrics {
+
+    /**
+     * 手指松开或嵌套滚动结束
+     *
+     * @param gestureMillis 从开始拖动下拉头到松手的时长
+     * @param refreshing    松手后是否开始刷新
+     */
+    void onPullReleased(long gestureMillis, boolean refreshing);
+
+    /**
+     * 一次刷新结束
+     *
+     * @param durationMillis 从回调 onRefresh 到刷新结束的时长
+     * @param call           结束的刷新，可以据此区分完成、失败、取消和超时
+     */
+    void onRefreshFinished(long durationMillis, RefreshCall call);
+
+    /**
+     * 下拉头的显示或隐藏动画正常结束
+     *
+     * @param durationMillis 动画的时长
+     * @param frames         绘制的帧数
+     * @param droppedFrames  根据相邻两帧的间隔估算的丢帧数
+     */
+    void onHeaderAnimationFinished(long durationMillis, int frames, int droppedFrames);
+}
@@ -0,0 +1,72 @@
+package com.asion.pulltorefresh;
+
+/**
+ * 下拉刷新的时效策略，根据 {@link UpdatedAtStore} 中记录的上次更新时间判断数据是否需要刷新
+ * <ul>
+ * <li>最小间隔：距离上次更新不到这个时间时，下拉松手后直接隐藏下拉头，不会回调刷新监听器</li>
+ * <li>有效期：距离上次更新超过这个时间时数据视为过期</li>
+ * <li>显示时刷新：界面显示时数据已经过期，就在后台刷新，不显示下拉头，刷新期间继续显示旧数据</li>
+ * </ul>
+ * 策略只影响下拉和自动刷新，{@link RefreshView#refresh()} 总是会刷新。通过 {@link RefreshView#setRefreshPolicy(RefreshPolicy)} 设置，
+ * 作用于注册监听器时传入的 id。
+ */
+public final class RefreshPolicy {
+
+    /**
+     * 默认策略，每次下拉都会刷新，数据永不过期
+     */
+    public static final RefreshPolicy ALWAYS = new RefreshPolicy(0, Long.MAX_VALUE, false);
+
+    private final long minInterval; // 两次刷新的最小间隔
+    private final long timeToLive; // 数据的有效期
+    private final boolean revalidateOnShow; // 界面显示时数据过期是否自动在后台刷新
+
+    /**
+     * @param minInterval      两次刷新的最小间隔，单位毫秒，0 表示不限制
+     * @param timeToLive       数据的有效期，单位毫秒，Long.MAX_VALUE 表示永不过期
+     * @param revalidateOnShow 界面显示时数据已经过期，是否自动在后台刷新
+     */
+    public RefreshPolicy(long minInterval, long timeToLive, boolean revalidateOnShow) {
+        if (minInterval < 0 || timeToLive < 0) {
+            throw new IllegalArgumentException("minInterval and timeToLive must not be negative");
+        }
+        this.minInterval = minInterval;
+        this.timeToLive = timeToLive;
+        this.revalidateOnShow = revalidateOnShow;
+    }
+
+    public long getMinInterval() {
+        return minInterval;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    public boolean isRevalidateOnShow() {
+        return revalidateOnShow;
+    }
+
+    /**
+     * 距离上次更新是否还不到最小间隔，此时的下拉不需要刷新
+     * 从未更新过或系统时间被调到上次更新之前时返回 false
+     */
+    public boolean isThrottled(long lastUpdateTime, long currentTime) {
+        if (lastUpdateTime == UpdatedAtStore.NOT_UPDATED) {
+            return false;
+        }
+        long age = currentTime - lastUpdateTime;
+        return age >= 0 && age < minInterval;
+    }
+
+    /**
+     * 数据是否已经过期，从未更新过或系统时间被调到上次更新之前时视为过期
+     */
+    public boolean isStale(long lastUpdateTime, long currentTime) {
+        if (lastUpdateTime == UpdatedAtStore.NOT_UPDATED) {
+            return true;
+        }
+        long age = currentTime - lastUpdateTime;
+        return age < 0 || age >= timeToLive;
+    }
+}
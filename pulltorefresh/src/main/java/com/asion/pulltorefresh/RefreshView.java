@@ -1,33 +1,44 @@
 package com.asion.pulltorefresh;
 
+import android.content.ComponentCallbacks2;
 import android.content.Context;
-import android.content.SharedPreferences;
+import android.content.res.Configuration;
+import android.graphics.drawable.Drawable;
 import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Build;
+import android.os.MessageQueue;
 import android.os.SystemClock;
-import android.preference.PreferenceManager;
+import android.support.annotation.VisibleForTesting;
+import android.support.v4.content.res.ResourcesCompat;
+import android.support.v4.os.TraceCompat;
+import android.support.v4.view.NestedScrollingChild;
+import android.support.v4.view.NestedScrollingParent;
+import android.support.v4.view.NestedScrollingParentHelper;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewConfiguration;
-import android.view.animation.RotateAnimation;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.view.animation.Interpolator;
+import android.widget.AbsListView;
+import android.widget.HeaderViewListAdapter;
 import android.widget.ImageView;
 import android.widget.LinearLayout;
+import android.widget.ListAdapter;
 import android.widget.ListView;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.asion.asionpulltorefresh.R;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
-import java.util.GregorianCalendar;
+import java.util.concurrent.Executor;
 
-public class RefreshView extends LinearLayout implements View.OnTouchListener {
-
-    private static final String TAG = RefreshView.class.getSimpleName();
+public class RefreshView extends LinearLayout implements View.OnTouchListener, NestedScrollingParent {
 
     public enum PULL_STATUS {
         STATUS_PULL_TO_REFRESH(0), // 下拉状态
@@ -46,7 +57,35 @@ public class RefreshView extends LinearLayout implements View.OnTouchListener {
         }
     }
 
-    // 下拉头部回滚的速度
+    public enum LOAD_STATUS {
+        STATUS_LOAD_FINISHED(0), // 加载完成或未加载状态
+        STATUS_LOADING(1), // 正在加载状态
+        STATUS_LOAD_FAILED(2), // 加载失败状态
+        STATUS_NO_MORE(3); // 没有更多数据状态
+
+        private int status; // 状态
+
+        LOAD_STATUS(int value) {
+            this.status = value;
+        }
+
+        public int getValue() {
+            return this.status;
+        }
+    }
+
+    // 箭头开始翻转时的下拉进度，进度从此值到 1 的过程中箭头从向下旋转到向上
+    private static final float ARROW_FLIP_START = 0.8f;
+
+    // 默认在最后一个可见Item距离末尾多少个Item时开始加载下一页
+    public static final int DEFAULT_LOAD_MORE_DISTANCE = 5;
+
+    /**
+     * 下拉头部回滚的速度
+     *
+     * @deprecated 下拉头的动画已改为按时间驱动，请使用 {@link #setHeaderAnimationDuration(long)}
+     */
+    @Deprecated
     public static final int SCROLL_SPEED = -20;
     // 一分钟的毫秒值，用于判断上次的更新时间
     public static final long ONE_MINUTE = 60 * 1000;
@@ -58,19 +97,35 @@ public class RefreshView extends LinearLayout implements View.OnTouchListener {
     public static final long ONE_MONTH = 30 * ONE_DAY;
     // 一年的毫秒值，用于判断上次的更新时间
     public static final long ONE_YEAR = 12 * ONE_MONTH;
-    // 上次更新时间的字符串常量，用于作为 SharedPreferences 的键值
-    private static final String UPDATED_AT = "updated_at";
     /** 时间日期格式化到年月日时分秒. */
     public static final String dateFormatYMDHMS = "yyyy-MM-dd HH:mm:ss";
     /** 时分. */
     public static final String dateFormatHM = "HH:mm";
 
     // 下拉刷新的回调接口
-    private PullToRefreshListener mListener;
+    private OnRefreshListener mListener;
+
+    private Executor refreshExecutor = AsyncTask.THREAD_POOL_EXECUTOR; // 执行刷新逻辑的线程池
+    private long refreshTimeout; // 刷新超时时间，0 表示不超时
+    private RefreshPolicy refreshPolicy = RefreshPolicy.ALWAYS; // 根据上次更新时间决定是否需要刷新
+    private volatile RefreshCall currentCall; // 正在进行中的刷新，只在主线程中修改
+
+    // 加载更多的回调接口
+    private OnLoadMoreListener mLoadMoreListener;
+    private int loadMoreDistance = DEFAULT_LOAD_MORE_DISTANCE; // 提前加载下一页的距离
+    private boolean hasMoreData = true; // 是否还有更多数据
+    private LOAD_STATUS loadStatus = LOAD_STATUS.STATUS_LOAD_FINISHED; // 加载更多的当前状态
+    private volatile RefreshCall loadMoreCall; // 正在进行中的加载更多，只在主线程中修改
+    private View footer; // 加载更多的底部View，第一次使用时才加载
+    private ProgressBar footerProgressBar; // 加载更多时显示的进度条
+    private TextView footerDescription; // 加载更多的文字描述
+    private boolean footerAttached; // 底部View是否已经添加到 ListView 中
+    private int loadMoreRemaining = -1; // 上一次开始加载时剩余的Item数量，布局变化后数量不同才说明有了新数据
 
-    private SharedPreferences preferences; // 用于存储上次更新时间
-    private View header; // 下拉头的View
-    private ListView listView; // 需要去下拉刷新的ListView
+    private UpdatedAtStore updatedAtStore; // 用于存储上次更新时间
+    private View header; // 下拉头的View，第一次下拉之前只是一个同样高度的占位View
+    private boolean headerInflated; // 下拉头的布局是否已经加载
+    private ScrollTarget scrollTarget; // 需要去下拉刷新的内容，可以是 ListView、RecyclerView、ScrollView 等
 
     private ProgressBar progressBar; // 刷新时显示的进度条
     private ImageView arrow; // 指示下拉和释放的箭头
@@ -78,7 +133,12 @@ public class RefreshView extends LinearLayout implements View.OnTouchListener {
     private TextView updateAt; // 上次更新时间的文字描述
 
     private MarginLayoutParams headerLayoutParams; // 下拉头的布局参数
-    private long lastUpdateTime=-1; // 上次更新时间的毫秒值
+    private int headerOffset; // 下拉头当前显示的偏移量，拖动和动画过程中通过平移实现，与 topMargin 的差值即为平移距离
+    private RelativeTimeFormatter updatedAtFormatter; // 上次更新时间的格式化，按时间段缓存结果
+    private String updatedAtLabel; // 当前显示的上次更新时间文字
+    private boolean headerVisible; // 下拉头当前是否可见，可见时才需要定时刷新上次更新时间
+    private OnPullProgressListener mProgressListener; // 下拉进度的回调接口
+    private int lastProgressOffset = Integer.MIN_VALUE; // 上一次回调下拉进度时的偏移量
 
     // 为了防止不同界面的下拉刷新在上次更新时间上互相有冲突，使用id来做区分
     private int mId = -1;
@@ -93,41 +153,70 @@ public class RefreshView extends LinearLayout implements View.OnTouchListener {
     // 记录上一次的状态是什么，避免进行重复操作
     private PULL_STATUS lastStatus = currentStatus;
 
-    private float yDown; // 手指按下时的屏幕纵坐标
+    // 无效的手指 id
+    private static final int INVALID_POINTER = -1;
+
+    private int activePointerId = INVALID_POINTER; // 当前控制下拉的手指 id，多指操作时只跟随这一根手指
+    private float lastMotionY; // 上一个触摸采样点的纵坐标，已抵消内容的平移
+    private float slopAnchorY; // 判断是否超过 touchSlop 的起点
+    private boolean isBeingDragged; // 当前是否正在通过 touch 事件拖动下拉头
+    private float pullDistance; // 下拉头当前已经下拉的距离，即偏移量与隐藏位置的差值
+    private PullResistance pullResistance = PullResistance.linear(0.5f); // 下拉的阻力曲线
 
     private int touchSlop; // 在被判定为滚动之前用户手指可以移动的最大值。
 
     private boolean loadOnce; // 是否已加载过一次layout，这里onLayout中的初始化只需加载一次
 
-    private boolean ableToPull; // 当前是否可以下拉，只有ListView滚动到头的时候才允许下拉
+    private boolean ableToPull; // 当前是否可以下拉，只有内容滚动到头的时候才允许下拉
+
+    private HeaderAnimator headerAnimator; // 下拉头的显示和隐藏动画
+
+    private Handler mainHandler; // 用于把子线程中的调用切换到主线程
+
+    private NestedScrollingParentHelper nestedScrollingParentHelper;
+    private boolean nestedDragging; // 当前是否正在通过嵌套滚动拖动下拉头
+
+    private ComponentCallbacks2 trimCallbacks; // 内存回调，只在显示在窗口中时注册
+
+    // 提前解码的箭头图片，Resources 的图片缓存只持有弱引用，这里保持引用直到下拉头加载或内存紧张
+    private static volatile Drawable.ConstantState sPreloadedArrow;
+
+    private RefreshMetrics metrics; // 性能指标的回调，为 null 时不做任何统计
+    private long pullStartTime; // 开始拖动下拉头的时间，只在设置了性能指标回调时记录
+    private long refreshStartTime; // 开始刷新的时间，只在设置了性能指标回调时记录
 
     /**
-     * 下拉刷新控件的构造函数，会在运行时动态添加一个下拉头的布局
+     * 下拉刷新控件的构造函数，会在运行时动态添加一个下拉头的占位View
+     * 下拉头的布局在第一次下拉超过 touchSlop 时才会加载，也可以通过 {@link #preinflateHeaderWhenIdle()} 在空闲时提前加载
      */
     public RefreshView(Context context, AttributeSet attrs) {
         super(context, attrs);
 
-        preferences = PreferenceManager.getDefaultSharedPreferences(context);
-        header = LayoutInflater.from(context).inflate(R.layout.pull_to_refresh, null, true);
-        progressBar = (ProgressBar) header.findViewById(R.id.progress_bar);
-        arrow = (ImageView) header.findViewById(R.id.arrow);
-        description = (TextView) header.findViewById(R.id.description);
-        updateAt = (TextView) header.findViewById(R.id.updated_at);
+        updatedAtStore = PreferencesUpdatedAtStore.getInstance(context);
+        header = new View(context);
+        updatedAtFormatter = new RelativeTimeFormatter(getResources());
         touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        headerAnimator = new HeaderAnimator(this, new HeaderAnimator.Target() {
+            @Override
+            public int getHeaderOffset() {
+                return headerOffset;
+            }
 
-        refreshUpdatedAtValue();
-        setOrientation(VERTICAL);
-        addView(header, 0);
-
-        //Log.d(TAG, "RefreshView Constructor() getChildAt(0): " + getChildAt(0));
-        //Log.d(TAG, "RefreshView Constructor() getChildAt(0): " + getChildAt(1));
+            @Override
+            public void setHeaderOffset(int offset) {
+                moveHeader(offset);
+            }
+        });
+        mainHandler = new Handler(Looper.getMainLooper());
+        nestedScrollingParentHelper = new NestedScrollingParentHelper(this);
 
-//        listView = (ListView) getChildAt(1);
-//        listView.setOnTouchListener(this);
+        setOrientation(VERTICAL);
+        addView(header, 0, new LayoutParams(LayoutParams.MATCH_PARENT,
+                getResources().getDimensionPixelSize(R.dimen.pull_to_refresh_header_height)));
     }
 
     /**
-     * 进行一些关键性的初始化操作，比如：将下拉头向上偏移进行隐藏，给 ListView 注册 touch 事件
+     * 进行一些关键性的初始化操作，比如：将下拉头向上偏移进行隐藏，给可滚动的内容注册 touch 事件
      */
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
@@ -137,288 +226,1192 @@ public class RefreshView extends LinearLayout implements View.OnTouchListener {
 
             headerLayoutParams = (MarginLayoutParams) header.getLayoutParams();
             headerLayoutParams.topMargin = hideHeaderHeight;
-            listView = (ListView) getChildAt(1);
-            //Log.d(TAG, "onLayout() getChildAt(0): " + getChildAt(0));
-            //Log.d(TAG, "onLayout() listView: " + listView);
-            listView.setOnTouchListener(this);
+            headerOffset = hideHeaderHeight;
+            if (scrollTarget == null) {
+                setScrollTarget(ScrollTargets.from(getChildAt(1)));
+            }
             loadOnce = true;
         }
     }
 
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mainHandler.removeCallbacks(detachedReleaseRunnable);
+        getViewTreeObserver().addOnScrollChangedListener(loadMoreScrollListener);
+        getViewTreeObserver().addOnGlobalLayoutListener(loadMoreLayoutListener);
+        if (trimCallbacks == null) {
+            trimCallbacks = new ComponentCallbacks2() {
+                @Override
+                public void onTrimMemory(int level) {
+                    // 界面不可见或内存紧张时释放下拉头，下一次下拉时重新加载
+                    if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+                        recycleHeader(level);
+                        updatedAtFormatter.clear();
+                        sPreloadedArrow = null;
+                    }
+                }
+
+                @Override
+                public void onConfigurationChanged(Configuration newConfig) {
+                }
+
+                @Override
+                public void onLowMemory() {
+                    onTrimMemory(TRIM_MEMORY_COMPLETE);
+                }
+            };
+        }
+        getContext().getApplicationContext().registerComponentCallbacks(trimCallbacks);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        // 离开窗口后不会再收到帧回调，直接把动画结束到目标位置，避免状态停留在中途
+        headerAnimator.end();
+        removeCallbacks(updatedAtTickRunnable);
+        getViewTreeObserver().removeOnScrollChangedListener(loadMoreScrollListener);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            getViewTreeObserver().removeOnGlobalLayoutListener(loadMoreLayoutListener);
+        } else {
+            getViewTreeObserver().removeGlobalOnLayoutListener(loadMoreLayoutListener);
+        }
+        getContext().getApplicationContext().unregisterComponentCallbacks(trimCallbacks);
+        // 离开窗口的过程中不能修改子View，等分发结束后再释放下拉头
+        mainHandler.post(detachedReleaseRunnable);
+        super.onDetachedFromWindow();
+    }
+
+    private final Runnable detachedReleaseRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!ViewCompat.isAttachedToWindow(RefreshView.this)) {
+                recycleHeader(RefreshMemoryStats.LEVEL_DETACHED);
+            }
+        }
+    };
+
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        // 语言可能发生了变化，重新格式化上次更新时间
+        updatedAtFormatter.clear();
+        if (headerVisible) {
+            refreshUpdatedAtValue();
+        }
+    }
+
     /**
-     * 当 ListView 被触摸时调用，其中处理了各种下拉刷新的具体逻辑
+     * 当可滚动的内容被触摸时调用，其中处理了各种下拉刷新的具体逻辑
+     * 只跟随一根手指，手指切换时从新手指的位置继续计算；MOVE 事件中批量的历史采样点会逐个处理，拖动中不会产生任何内存分配
+     * 支持嵌套滚动的内容（如 RecyclerView）不走这里，而是通过 {@link #onNestedScroll} 等回调驱动下拉头
      */
     @Override
     public boolean onTouch(View v, MotionEvent event) {
-        setCanAbleToPull(event); // 判断是否可以下拉
-        if (ableToPull) {
-            switch (event.getAction()) {
-                case MotionEvent.ACTION_DOWN:
-                    yDown = event.getRawY();
+        TraceCompat.beginSection("RefreshView.onTouch");
+        // 事件坐标是相对内容的，内容在下拉时会被平移，加上平移量后得到稳定的坐标
+        float translationY = v.getTranslationY();
+        boolean wasDragging = isBeingDragged;
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                activePointerId = event.getPointerId(0);
+                lastMotionY = event.getY(0) + translationY;
+                isBeingDragged = false;
+                ableToPull = false;
+                setCanAbleToPull(lastMotionY);
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN: {
+                // 新按下的手指接管下拉，从它当前的位置继续计算，下拉头不会跳动
+                int index = event.getActionIndex();
+                activePointerId = event.getPointerId(index);
+                lastMotionY = event.getY(index) + translationY;
+                slopAnchorY = lastMotionY;
+                break;
+            }
+            case MotionEvent.ACTION_POINTER_UP: {
+                int index = event.getActionIndex();
+                if (event.getPointerId(index) == activePointerId) {
+                    // 控制下拉的手指抬起，交给另一根手指
+                    int newIndex = index == 0 ? 1 : 0;
+                    activePointerId = event.getPointerId(newIndex);
+                    lastMotionY = event.getY(newIndex) + translationY;
+                    slopAnchorY = lastMotionY;
+                }
+                break;
+            }
+            case MotionEvent.ACTION_MOVE: {
+                int index = event.findPointerIndex(activePointerId);
+                if (index < 0) {
                     break;
-                case MotionEvent.ACTION_MOVE:
-                    // 获取移动中的 Y 轴的位置
-                    float yMove = event.getRawY();
-                    // 获取从按下到移动过程中移动的距离
-                    int distance = (int) (yMove - yDown);
-
-                    // 如果手指是上滑状态，并且下拉头是完全隐藏的，就屏蔽下拉事件
-                    if (distance <= 0 && headerLayoutParams.topMargin <= hideHeaderHeight) {
-                        return false;
-                    }
-                    if (distance < touchSlop) {
-                        return false;
-                    }
-                    // 判断是否已经在刷新状态
-                    if (currentStatus != PULL_STATUS.STATUS_REFRESHING) {
-                        // 判断设置的 topMargin 是否 > 0, 默认初始设置为 -header.getHeight()
-                        if (headerLayoutParams.topMargin > 0) {
-                            currentStatus = PULL_STATUS.STATUS_RELEASE_TO_REFRESH;
-                        } else {
-                            // 否则状态为下拉中的状态
-                            currentStatus = PULL_STATUS.STATUS_PULL_TO_REFRESH;
-                        }
-                        // 通过偏移下拉头的 topMargin 值，来实现下拉效果
-                        headerLayoutParams.topMargin = (distance / 2) + hideHeaderHeight;
-                        header.setLayoutParams(headerLayoutParams);
+                }
+                for (int h = 0, historySize = event.getHistorySize(); h < historySize; h++) {
+                    processTouchSample(event.getHistoricalY(index, h) + translationY);
+                }
+                processTouchSample(event.getY(index) + translationY);
+                if (isBeingDragged) {
+                    if (!wasDragging) {
+                        // 开始下拉，取消内容自身对这次触摸的处理，避免被按下的一项一直处于选中状态
+                        cancelTargetTouch(v, event);
                     }
-                    break;
-                case MotionEvent.ACTION_UP:
-                default:
-                    if (currentStatus == PULL_STATUS.STATUS_RELEASE_TO_REFRESH) {
-                        // 松手时如果是释放立即刷新状态，就去调用正在刷新的任务
-                        new RefreshingTask().execute();
-                    } else if (currentStatus == PULL_STATUS.STATUS_PULL_TO_REFRESH) {
-                        // 松手时如果是下拉状态，就去调用隐藏下拉头的任务
-                        new HideHeaderTask().execute();
+                    applyPull();
+                    if (wasDragging && pullDistance == 0) {
+                        // 下拉头被推回隐藏位置，结束这次下拉并把触摸交还给内容，手指继续上移时内容可以正常滚动
+                        float y = event.getY(index) + translationY;
+                        isBeingDragged = false;
+                        releaseHeader();
+                        setCanAbleToPull(y);
+                        restartTargetTouch(v, event, index, y);
                     }
-                    break;
+                }
+                break;
             }
-            // 时刻记得更新下拉头中的信息
-            if (currentStatus == PULL_STATUS.STATUS_PULL_TO_REFRESH
-                    || currentStatus == PULL_STATUS.STATUS_RELEASE_TO_REFRESH) {
-                updateHeaderView();
-                // 当前正处于下拉或释放状态，要让 ListView 失去焦点，否则被点击的那一项会一直处于选中状态
-                listView.setPressed(false);
-                listView.setFocusable(false);
-                listView.setFocusableInTouchMode(false);
-                lastStatus = currentStatus;
-                // 当前正处于下拉或释放状态，通过返回 true 屏蔽掉 ListView 的滚动事件
-                return true;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                activePointerId = INVALID_POINTER;
+                if (isBeingDragged) {
+                    isBeingDragged = false;
+                    releaseHeader();
+                }
+                break;
+        }
+        TraceCompat.endSection();
+        // 正处于下拉状态时，通过返回 true 屏蔽掉内容的滚动事件
+        return wasDragging || isBeingDragged;
+    }
+
+    /**
+     * 处理一个触摸采样点
+     */
+    private void processTouchSample(float y) {
+        float dy = y - lastMotionY;
+        lastMotionY = y;
+        if (!isBeingDragged) {
+            // 还没有开始下拉时才需要判断内容是否滚动到顶部
+            if (!ableToPull) {
+                setCanAbleToPull(y);
+                return;
+            }
+            // 手指向下移动超过 touchSlop 才开始下拉，超过的部分计入下拉距离
+            if (y - slopAnchorY <= touchSlop) {
+                return;
             }
+            if (!startPull()) {
+                return;
+            }
+            isBeingDragged = true;
+            dy = y - slopAnchorY - touchSlop;
+        }
+        pullBy(dy);
+    }
+
+    /**
+     * 开始拖动下拉头，如果下拉头正在执行回滚动画，从当前位置继续拖动
+     */
+    private boolean startPull() {
+        // 判断是否已经在刷新状态
+        if (currentStatus == PULL_STATUS.STATUS_REFRESHING) {
+            return false;
+        }
+        ensureHeader();
+        // 手指接管了下拉头，停止正在执行的回滚动画
+        if (headerAnimator.isRunning()) {
+            headerAnimator.cancel();
+        }
+        pullDistance = Math.max(0, headerOffset - hideHeaderHeight);
+        if (metrics != null) {
+            pullStartTime = SystemClock.uptimeMillis();
+        }
+        return true;
+    }
+
+    /**
+     * 根据手指移动的距离和阻力曲线累加下拉距离，下拉距离不会小于 0，也不会超过阻力曲线的上限
+     *
+     * @return 实际被下拉头消耗的手指移动距离
+     */
+    private float pullBy(float dy) {
+        float distance = pullResistance.pull(pullDistance, dy, -hideHeaderHeight);
+        float consumed = dy;
+        if (dy < 0 && distance == 0) {
+            // 下拉头回到隐藏位置，只消耗推回所需的距离，剩余的交给内容滚动
+            float factor = pullResistance.getReturnFactor(pullDistance, -hideHeaderHeight);
+            consumed = factor > 0 ? -pullDistance / factor : 0;
+        }
+        pullDistance = distance;
+        return consumed;
+    }
+
+    /**
+     * 按照当前的下拉距离移动下拉头，并更新下拉或释放状态，每个触摸事件只调用一次
+     */
+    private void applyPull() {
+        int offset = hideHeaderHeight + Math.round(pullDistance);
+        // 判断下拉头的偏移量是否 > 0, 默认初始设置为 -header.getHeight()
+        if (offset > 0) {
+            currentStatus = PULL_STATUS.STATUS_RELEASE_TO_REFRESH;
+        } else {
+            // 否则状态为下拉中的状态
+            currentStatus = PULL_STATUS.STATUS_PULL_TO_REFRESH;
+        }
+        // 通过平移下拉头和内容来实现下拉效果，拖动过程中不会触发重新布局
+        moveHeader(offset);
+        // 时刻记得更新下拉头中的信息
+        updateHeaderView();
+        lastStatus = currentStatus;
+    }
+
+    /**
+     * 给内容发送一个 CANCEL 事件，结束内容自身对这次触摸的处理，每次下拉只会发送一次
+     */
+    private void cancelTargetTouch(View v, MotionEvent event) {
+        MotionEvent cancel = MotionEvent.obtain(event);
+        cancel.setAction(MotionEvent.ACTION_CANCEL);
+        v.onTouchEvent(cancel);
+        cancel.recycle();
+    }
+
+    /**
+     * 给内容发送一个 DOWN 事件，让内容从当前位置重新开始处理这次触摸，与 SwipeRefreshLayout 的做法相同
+     *
+     * @param y 下拉头回到隐藏位置后，触摸点相对内容的纵坐标
+     */
+    private void restartTargetTouch(View v, MotionEvent event, int index, float y) {
+        long time = event.getEventTime();
+        MotionEvent down = MotionEvent.obtain(time, time, MotionEvent.ACTION_DOWN, event.getX(index), y, event.getMetaState());
+        v.onTouchEvent(down);
+        down.recycle();
+    }
+
+    /**
+     * 设置下拉的阻力曲线，默认为 {@link PullResistance#linear(float)}，系数 0.5
+     */
+    public void setPullResistance(PullResistance resistance) {
+        pullResistance = resistance != null ? resistance : PullResistance.linear(0.5f);
+    }
+
+    /**
+     * 手指松开时调用，根据当前状态决定开始刷新还是隐藏下拉头
+     */
+    private void releaseHeader() {
+        boolean releaseToRefresh = currentStatus == PULL_STATUS.STATUS_RELEASE_TO_REFRESH;
+        // 距离上次更新还不到最小间隔时数据仍然有效，不会刷新
+        boolean throttled = releaseToRefresh && currentCall == null
+                && refreshPolicy.isThrottled(updatedAtStore.get(mId), System.currentTimeMillis());
+        if (metrics != null) {
+            metrics.onPullReleased(SystemClock.uptimeMillis() - pullStartTime, releaseToRefresh && !throttled);
+        }
+        if (throttled) {
+            hideHeader();
+        } else if (releaseToRefresh) {
+            // 松手时如果是释放立即刷新状态，就回滚到刚好显示下拉头的位置并开始刷新
+            showRefreshingHeader();
+        } else if (currentStatus == PULL_STATUS.STATUS_PULL_TO_REFRESH) {
+            // 松手时如果是下拉状态，就隐藏下拉头
+            hideHeader();
         }
+    }
+
+    @Override
+    public boolean onStartNestedScroll(View child, View target, int nestedScrollAxes) {
+        return isEnabled() && loadOnce
+                && (nestedScrollAxes & ViewCompat.SCROLL_AXIS_VERTICAL) != 0
+                && currentStatus != PULL_STATUS.STATUS_REFRESHING
+                && loadMoreCall == null;
+    }
+
+    @Override
+    public void onNestedScrollAccepted(View child, View target, int axes) {
+        nestedScrollingParentHelper.onNestedScrollAccepted(child, target, axes);
+        nestedDragging = false;
+    }
+
+    @Override
+    public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+        // 下拉头已经显示时手指向上滑动，先收起下拉头，再让内容滚动
+        if (dy > 0 && nestedDragging && pullDistance > 0) {
+            consumed[1] = Math.min(dy, Math.round(-nestedPullBy(-dy)));
+        }
+    }
+
+    @Override
+    public void onNestedScroll(View target, int dxConsumed, int dyConsumed, int dxUnconsumed, int dyUnconsumed) {
+        // 内容已经滚动到顶部，剩余的下拉距离交给下拉头
+        if (dyUnconsumed < 0 && scrollTarget.isAtTop()) {
+            nestedPullBy(-dyUnconsumed);
+        }
+    }
+
+    @Override
+    public boolean onNestedPreFling(View target, float velocityX, float velocityY) {
+        // 下拉头正在被拖动时，屏蔽内容的惯性滚动
+        return nestedDragging && headerOffset > hideHeaderHeight;
+    }
+
+    @Override
+    public boolean onNestedFling(View target, float velocityX, float velocityY, boolean consumed) {
         return false;
     }
 
+    @Override
+    public void onStopNestedScroll(View target) {
+        nestedScrollingParentHelper.onStopNestedScroll(target);
+        if (nestedDragging) {
+            nestedDragging = false;
+            releaseHeader();
+        }
+    }
+
+    @Override
+    public int getNestedScrollAxes() {
+        return nestedScrollingParentHelper.getNestedScrollAxes();
+    }
+
+    /**
+     * 嵌套滚动中累计下拉距离并移动下拉头
+     *
+     * @return 实际被下拉头消耗的滚动距离
+     */
+    private float nestedPullBy(int dy) {
+        if (!nestedDragging) {
+            if (!startPull()) {
+                return 0;
+            }
+            nestedDragging = true;
+        }
+        float consumed = pullBy(dy);
+        applyPull();
+        return consumed;
+    }
+
+    /**
+     * 设置需要下拉刷新的内容，默认会根据第二个子View的类型自动创建
+     * 支持嵌套滚动的内容（如 RecyclerView、NestedScrollView）通过嵌套滚动驱动下拉头，其余内容通过 touch 事件驱动
+     */
+    public void setScrollTarget(ScrollTarget target) {
+        if (scrollTarget != null) {
+            scrollTarget.getView().setOnTouchListener(null);
+        }
+        scrollTarget = target;
+        View targetView = target.getView();
+        if (targetView instanceof NestedScrollingChild) {
+            ViewCompat.setNestedScrollingEnabled(targetView, true);
+        } else {
+            targetView.setOnTouchListener(this);
+        }
+        scheduleAttachLoadMoreFooter();
+    }
+
     /**
      * 给下拉刷新控件注册一个监听器
      *
      * @param listener 监听器的实现
      * @param id       为了防止不同界面的下拉刷新在上次更新时间上互相有冲突，不同界面在注册下拉刷新监听器时一定要传入不同的 id
      */
-    public void setOnRefreshListener(PullToRefreshListener listener, int id) {
+    public void setOnRefreshListener(final PullToRefreshListener listener, int id) {
+        // onRefresh 返回即视为刷新完成，不再需要手动调用 finishRefreshing()
+        setOnRefreshListener(listener == null ? null : new OnRefreshListener() {
+            @Override
+            public void onRefresh(RefreshCall call) {
+                listener.onRefresh();
+                call.complete();
+            }
+        }, id);
+    }
+
+    /**
+     * 给下拉刷新控件注册一个异步的监听器，刷新完成后调用 {@link RefreshCall#complete()} 即可
+     *
+     * @param listener 监听器的实现
+     * @param id       为了防止不同界面的下拉刷新在上次更新时间上互相有冲突，不同界面在注册下拉刷新监听器时一定要传入不同的 id
+     */
+    public void setOnRefreshListener(OnRefreshListener listener, int id) {
         mListener = listener;
         mId = id;
     }
 
     /**
-     * 当所有的刷新逻辑完成后，记录调用一下，否则你的 ListView 将一直处于正在刷新状态
+     * 设置执行刷新逻辑的线程池，默认使用 {@link AsyncTask#THREAD_POOL_EXECUTOR}，不会占用 AsyncTask 的串行队列
      */
-    public void finishRefreshing() {
-        currentStatus = PULL_STATUS.STATUS_REFRESH_FINISHED;
-        preferences.edit().putLong(UPDATED_AT + mId, System.currentTimeMillis()).commit();
-        new HideHeaderTask().execute();
+    public void setRefreshExecutor(Executor executor) {
+        refreshExecutor = executor != null ? executor : AsyncTask.THREAD_POOL_EXECUTOR;
+    }
+
+    /**
+     * 设置每次刷新的超时时间，单位毫秒，超时后刷新会被取消并隐藏下拉头，传入 0 表示不超时
+     */
+    public void setRefreshTimeout(long timeout) {
+        refreshTimeout = timeout < 0 ? 0 : timeout;
+    }
+
+    /**
+     * 设置刷新的时效策略，默认为 {@link RefreshPolicy#ALWAYS}
+     */
+    public void setRefreshPolicy(RefreshPolicy policy) {
+        refreshPolicy = policy != null ? policy : RefreshPolicy.ALWAYS;
+        if (refreshPolicy.isRevalidateOnShow() && getWindowVisibility() == VISIBLE
+                && ViewCompat.isAttachedToWindow(this)) {
+            revalidateIfStale();
+        }
     }
 
     /**
-     * 根据当前 ListView 的滚动状态来设定 {@link #ableToPull}
-     * 的值，每次都需要在 onTouch 中第一个执行，这样可以判断出当前应该是滚动 ListView，还是应该进行下拉
+     * 数据过期时在后台刷新，不显示下拉头，已有刷新正在进行或数据仍然有效时返回 null
+     * 后台刷新期间下拉会显示下拉头并合并到这次刷新中
      */
-    private void setCanAbleToPull(MotionEvent event) {
-        View firstChild = listView.getChildAt(0);
-        if (firstChild != null) {
-            // 获取 ListView 中第一个Item的位置
-            int firstVisiblePos = listView.getFirstVisiblePosition();
-            // 判断第一个子控件的 Top 是否和第一个 Item 位置相等
-            if (firstVisiblePos == 0 && firstChild.getTop() == 0) {
-                if (!ableToPull) {
-                    // getRawY() 获得的是相对屏幕 Y 方向的位置
-                    yDown = event.getRawY();
+    public RefreshCall revalidateIfStale() {
+        if (mListener == null || currentCall != null
+                || !refreshPolicy.isStale(updatedAtStore.get(mId), System.currentTimeMillis())) {
+            return null;
+        }
+        // 与 refresh() 一样，刷新会替换数据，因此取消正在进行的加载更多
+        RefreshCall loading = loadMoreCall;
+        if (loading != null) {
+            loading.cancel();
+        }
+        return dispatchRefresh();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        // 第一次显示和从后台回到前台时检查数据是否过期
+        if (visibility == VISIBLE && refreshPolicy.isRevalidateOnShow()) {
+            revalidateIfStale();
+        }
+    }
+
+    /**
+     * 显示下拉头并开始刷新
+     * 如果已有刷新正在进行，不会重复回调监听器，而是直接返回进行中的刷新
+     */
+    public RefreshCall refresh() {
+        RefreshCall call = currentCall;
+        if (call != null) {
+            return call;
+        }
+        // 刷新和加载更多不能同时进行，刷新会替换数据，因此取消正在进行的加载更多
+        RefreshCall loading = loadMoreCall;
+        if (loading != null) {
+            loading.cancel();
+        }
+        if (loadOnce) {
+            headerAnimator.animateTo(0, new HeaderAnimator.OnAnimationEndListener() {
+                @Override
+                public void onAnimationEnd() {
+                    commitHeaderOffset();
                 }
-                // 如果首个元素的上边缘，距离父布局值为 0，就说明 ListView 滚动到了最顶部，此时应该允许下拉刷新
-                ableToPull = true;
-            } else {
-                if (headerLayoutParams.topMargin != hideHeaderHeight) {
-                    headerLayoutParams.topMargin = hideHeaderHeight;
-                    header.setLayoutParams(headerLayoutParams);
+            });
+        }
+        return startRefresh();
+    }
+
+    /**
+     * 取消正在进行的刷新，下拉头会隐藏，但不会记录更新时间，可以在任意线程中调用
+     */
+    public void cancelRefresh() {
+        RefreshCall call = currentCall;
+        if (call != null) {
+            call.cancel();
+        }
+    }
+
+    /**
+     * 当前是否有刷新正在进行
+     */
+    public boolean isRefreshing() {
+        return currentCall != null;
+    }
+
+    /**
+     * 注册加载更多的监听器，滚动到距离末尾 {@link #setLoadMoreDistance(int)} 个Item以内时会自动加载下一页
+     * 内容为 ListView 时底部View会自动添加到 ListView 中，Android 4.4 以下已经设置了 Adapter 时会重新设置一次以显示底部View，
+     * 其他内容请通过 {@link #getLoadMoreFooter()} 获取底部View并自行添加
+     */
+    public void setOnLoadMoreListener(OnLoadMoreListener listener) {
+        mLoadMoreListener = listener;
+        scheduleAttachLoadMoreFooter();
+    }
+
+    /**
+     * 设置提前加载下一页的距离，即最后一个可见Item距离末尾多少个Item时开始加载
+     */
+    public void setLoadMoreDistance(int distance) {
+        loadMoreDistance = Math.max(0, distance);
+    }
+
+    /**
+     * 设置是否还有更多数据，没有更多数据时不会再加载下一页，刷新后可重新设置为 true
+     * 可以在任意线程中调用，例如在 {@link OnLoadMoreListener#onLoadMore(RefreshCall)} 中，子线程中的调用会切换到主线程执行，
+     * 在 call.complete() 之前调用时，本次加载结束后底部会直接显示没有更多数据
+     */
+    public void setHasMoreData(final boolean hasMore) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    setHasMoreData(hasMore);
+                }
+            });
+            return;
+        }
+        hasMoreData = hasMore;
+        if (loadMoreCall == null) {
+            loadStatus = hasMore ? LOAD_STATUS.STATUS_LOAD_FINISHED : LOAD_STATUS.STATUS_NO_MORE;
+            updateFooterView();
+        }
+    }
+
+    /**
+     * 获取加载更多的当前状态
+     */
+    public LOAD_STATUS getLoadStatus() {
+        return loadStatus;
+    }
+
+    /**
+     * 获取加载更多的底部View，已经设置内容时以内容为父布局加载，布局参数与内容的类型一致
+     */
+    public View getLoadMoreFooter() {
+        if (footer == null) {
+            View targetView = scrollTarget != null ? scrollTarget.getView() : null;
+            ViewGroup parent = targetView instanceof ViewGroup ? (ViewGroup) targetView : this;
+            footer = LayoutInflater.from(getContext()).inflate(R.layout.load_more_footer, parent, false);
+            footerProgressBar = (ProgressBar) footer.findViewById(R.id.load_more_progress_bar);
+            footerDescription = (TextView) footer.findViewById(R.id.load_more_description);
+            footer.setOnClickListener(new OnClickListener() {
+                @Override
+                public void onClick(View v) {
+                    // 加载失败时点击重试
+                    if (loadStatus == LOAD_STATUS.STATUS_LOAD_FAILED) {
+                        loadMore();
+                    }
+                }
+            });
+            updateFooterView();
+        }
+        return footer;
+    }
+
+    /**
+     * 加载下一页，已有加载正在进行时直接返回进行中的加载
+     * 正在下拉或刷新、没有更多数据或未注册监听器时不会加载，返回 null
+     */
+    public RefreshCall loadMore() {
+        RefreshCall inFlight = loadMoreCall;
+        if (inFlight != null) {
+            return inFlight;
+        }
+        final OnLoadMoreListener listener = mLoadMoreListener;
+        if (listener == null || !hasMoreData || currentCall != null
+                || currentStatus != PULL_STATUS.STATUS_REFRESH_FINISHED) {
+            return null;
+        }
+        final RefreshCall call = new RefreshCall(loadMoreFinishListener);
+        loadMoreCall = call;
+        loadStatus = LOAD_STATUS.STATUS_LOADING;
+        updateFooterView();
+        if (refreshTimeout > 0) {
+            mainHandler.postDelayed(loadMoreTimeoutRunnable, refreshTimeout);
+        }
+        refreshExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!call.isDone()) {
+                    listener.onLoadMore(call);
                 }
-                ableToPull = false;
             }
-        } else {
-            // 如果 ListView 中没有元素，也应该允许下拉刷新
-            ableToPull = true;
+        });
+        return call;
+    }
+
+    /**
+     * 当前是否正在加载更多
+     */
+    public boolean isLoadingMore() {
+        return loadMoreCall != null;
+    }
+
+    /**
+     * 在下一次消息循环中添加底部View
+     * 默认的内容在 onLayout 中才创建，此时 ListView 刚刚完成布局，不能在布局过程中修改它的子View和 Adapter
+     */
+    private void scheduleAttachLoadMoreFooter() {
+        if (footerAttached || mLoadMoreListener == null || scrollTarget == null) {
+            return;
         }
+        removeCallbacks(attachFooterRunnable);
+        post(attachFooterRunnable);
     }
 
+    private final Runnable attachFooterRunnable = new Runnable() {
+        @Override
+        public void run() {
+            attachLoadMoreFooter();
+        }
+    };
+
     /**
-     * 更新下拉头中的信息
+     * 内容为 ListView 时把底部View添加到 ListView 中
      */
-    private void updateHeaderView() {
-        if (lastStatus != currentStatus) {
-            if (currentStatus == PULL_STATUS.STATUS_PULL_TO_REFRESH) {
-                description.setText(getResources().getString(R.string.pull_to_refresh));
-                arrow.setVisibility(View.VISIBLE);
-                progressBar.setVisibility(View.GONE);
-                rotateArrow();
-            } else if (currentStatus == PULL_STATUS.STATUS_RELEASE_TO_REFRESH) {
-                description.setText(getResources().getString(R.string.release_to_refresh));
-                arrow.setVisibility(View.VISIBLE);
-                progressBar.setVisibility(View.GONE);
-                rotateArrow();
-            } else if (currentStatus == PULL_STATUS.STATUS_REFRESHING) {
-                description.setText(getResources().getString(R.string.refreshing));
-                progressBar.setVisibility(View.VISIBLE);
-                arrow.clearAnimation();
-                arrow.setVisibility(View.GONE);
+    private void attachLoadMoreFooter() {
+        if (footerAttached || mLoadMoreListener == null || scrollTarget == null) {
+            return;
+        }
+        View targetView = scrollTarget.getView();
+        if (targetView instanceof ListView) {
+            ListView listView = (ListView) targetView;
+            View footerView = getLoadMoreFooter();
+            // 底部View可能是以 RefreshView 为父布局加载的，ListView 4.4 以下会把布局参数强转为 AbsListView.LayoutParams
+            ViewGroup.LayoutParams params = footerView.getLayoutParams();
+            if (!(params instanceof AbsListView.LayoutParams)) {
+                footerView.setLayoutParams(params == null
+                        ? new AbsListView.LayoutParams(AbsListView.LayoutParams.MATCH_PARENT, AbsListView.LayoutParams.WRAP_CONTENT)
+                        : new AbsListView.LayoutParams(params.width, params.height));
+            }
+            ListAdapter adapter = listView.getAdapter();
+            listView.addFooterView(footerView, null, false);
+            footerAttached = true;
+            // Android 4.4 以下在 setAdapter 之后添加的底部View不会显示，重新设置一次 Adapter
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT && adapter != null) {
+                if (adapter instanceof HeaderViewListAdapter) {
+                    adapter = ((HeaderViewListAdapter) adapter).getWrappedAdapter();
+                }
+                listView.setAdapter(adapter);
             }
-            refreshUpdatedAtValue();
         }
     }
 
     /**
-     * 根据当前的状态来旋转箭头
+     * 内容滚动时检查是否需要提前加载下一页
      */
-    private void rotateArrow() {
-        float pivotX = arrow.getWidth() / 2f;
-        float pivotY = arrow.getHeight() / 2f;
-        float fromDegrees = 0f;
-        float toDegrees = 0f;
-        if (currentStatus == PULL_STATUS.STATUS_PULL_TO_REFRESH) {
-            fromDegrees = 180f;
-            toDegrees = 360f;
-        } else if (currentStatus == PULL_STATUS.STATUS_RELEASE_TO_REFRESH) {
-            fromDegrees = 0f;
-            toDegrees = 180f;
+    private void checkLoadMore() {
+        if (mLoadMoreListener == null || scrollTarget == null
+                || loadStatus != LOAD_STATUS.STATUS_LOAD_FINISHED || currentCall != null) {
+            return;
+        }
+        int remaining = scrollTarget.getRemainingItemCount();
+        if (remaining <= loadMoreDistance && loadMore() != null) {
+            loadMoreRemaining = remaining;
         }
-        RotateAnimation animation = new RotateAnimation(fromDegrees, toDegrees, pivotX, pivotY);
-        animation.setDuration(100);
-        animation.setFillAfter(true);
-        arrow.startAnimation(animation);
     }
 
     /**
-     * 刷新下拉头中上次更新时间的文字描述
+     * 加载更多结束后，在主线程中更新底部状态
      */
-    private void refreshUpdatedAtValue() {
-        lastUpdateTime = preferences.getLong(UPDATED_AT + mId, -1);
-        long currentTime = System.currentTimeMillis();
-        long timePassed = currentTime - lastUpdateTime;
-        long timeIntoFormat;
-        String updateAtValue;
-
-        SimpleDateFormat simpleDateFormat = new SimpleDateFormat("HH:mm");
-        Date date = new Date(System.currentTimeMillis());
-
-        if (lastUpdateTime == -1) {
-            updateAtValue = getResources().getString(R.string.not_updated_yet);
-        } else if (timePassed < 0) {
-            updateAtValue = getResources().getString(R.string.time_error);
-        } else if (timePassed < ONE_MINUTE) {
-            updateAtValue = getResources().getString(R.string.updated_just_now);
-        } else if (timePassed < ONE_HOUR) {
-//            timeIntoFormat = timePassed / ONE_MINUTE;
-//            String value = timeIntoFormat + "分钟";
-//            updateAtValue = String.format(getResources().getString(R.string.updated_at), value);
-//        } else if (timePassed < ONE_DAY) {
-//            timeIntoFormat = timePassed / ONE_HOUR;
-//            String value = timeIntoFormat + "小时";
-//            updateAtValue = String.format(getResources().getString(R.string.updated_at), value);
-            updateAtValue="上次更新："+simpleDateFormat.format(date);
-        } else if (timePassed < 2*ONE_DAY) {
-            updateAtValue="昨天";
-        } else if (timePassed < ONE_MONTH) {
-            timeIntoFormat = timePassed / ONE_DAY;
-            String value = timeIntoFormat + "天前";
-            updateAtValue = String.format(getResources().getString(R.string.updated_at), value);
-        } else if (timePassed < ONE_YEAR) {
-            timeIntoFormat = timePassed / ONE_MONTH;
-            String value = timeIntoFormat + "个月前";
-            updateAtValue = String.format(getResources().getString(R.string.updated_at), value);
+    private void onLoadMoreFinished(RefreshCall call) {
+        if (call != loadMoreCall) {
+            return;
+        }
+        loadMoreCall = null;
+        mainHandler.removeCallbacks(loadMoreTimeoutRunnable);
+        if (!hasMoreData) {
+            loadStatus = LOAD_STATUS.STATUS_NO_MORE;
+        } else if (call.isFailed()) {
+            loadStatus = LOAD_STATUS.STATUS_LOAD_FAILED;
         } else {
-            timeIntoFormat = timePassed / ONE_YEAR;
-            String value = timeIntoFormat + "年前";
-            updateAtValue = String.format(getResources().getString(R.string.updated_at), value);
+            loadStatus = LOAD_STATUS.STATUS_LOAD_FINISHED;
+        }
+        updateFooterView();
+        Runnable update = call.takeUpdate();
+        if (update != null) {
+            update.run();
         }
-        updateAt.setText(updateAtValue);
     }
+
     /**
-     * 正在刷新的任务，在此任务中会去回调注册进来的下拉刷新监听器
+     * 更新底部View中的信息
      */
-    class RefreshingTask extends AsyncTask<Void, Integer, Void> {
+    private void updateFooterView() {
+        if (footer == null) {
+            return;
+        }
+        if (loadStatus == LOAD_STATUS.STATUS_LOADING) {
+            footerDescription.setText(R.string.loading_more);
+            footerProgressBar.setVisibility(View.VISIBLE);
+        } else if (loadStatus == LOAD_STATUS.STATUS_LOAD_FAILED) {
+            footerDescription.setText(R.string.load_more_failed);
+            footerProgressBar.setVisibility(View.GONE);
+        } else if (loadStatus == LOAD_STATUS.STATUS_NO_MORE) {
+            footerDescription.setText(R.string.no_more_data);
+            footerProgressBar.setVisibility(View.GONE);
+        } else {
+            footerDescription.setText(R.string.load_more);
+            footerProgressBar.setVisibility(View.GONE);
+        }
+    }
 
+    /**
+     * 一页加载完成或数据变化后列表会重新布局，列表仍然不够长时需要继续加载，不能只依赖滚动
+     * 剩余数量与上次开始加载时相同说明没有新数据，不再重复加载，避免空页面时不断请求
+     */
+    private final ViewTreeObserver.OnGlobalLayoutListener loadMoreLayoutListener = new ViewTreeObserver.OnGlobalLayoutListener() {
         @Override
-        protected Void doInBackground(Void... params) {
-            int topMargin = headerLayoutParams.topMargin;
-            while (true) {
-                topMargin = topMargin + SCROLL_SPEED;
-                if (topMargin <= 0) {
-                    topMargin = 0;
-                    break;
-                }
-                publishProgress(topMargin);
-                SystemClock.sleep(10);
+        public void onGlobalLayout() {
+            if (scrollTarget != null && scrollTarget.getRemainingItemCount() != loadMoreRemaining) {
+                checkLoadMore();
             }
-            currentStatus = PULL_STATUS.STATUS_REFRESHING;
-            publishProgress(0);
-            if (mListener != null) {
-                mListener.onRefresh();
+        }
+    };
+
+    private final ViewTreeObserver.OnScrollChangedListener loadMoreScrollListener = new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            checkLoadMore();
+        }
+    };
+
+    private final RefreshCall.OnFinishListener loadMoreFinishListener = new RefreshCall.OnFinishListener() {
+        @Override
+        public void onFinish(final RefreshCall call) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                onLoadMoreFinished(call);
+            } else {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onLoadMoreFinished(call);
+                    }
+                });
             }
-            return null;
         }
+    };
 
+    private final Runnable loadMoreTimeoutRunnable = new Runnable() {
         @Override
-        protected void onProgressUpdate(Integer... topMargin) {
-            updateHeaderView();
-            headerLayoutParams.topMargin = topMargin[0];
+        public void run() {
+            RefreshCall call = loadMoreCall;
+            if (call != null) {
+                call.timeout();
+            }
+        }
+    };
+
+    /**
+     * 设置上次更新时间的存储，默认使用 {@link PreferencesUpdatedAtStore#getInstance(Context)}
+     */
+    public void setUpdatedAtStore(UpdatedAtStore store) {
+        updatedAtStore = store != null ? store : PreferencesUpdatedAtStore.getInstance(getContext());
+    }
+
+    /**
+     * 设置性能指标的回调，用于上报拖动、刷新和动画的耗时，传入 null 时关闭统计
+     */
+    public void setRefreshMetrics(RefreshMetrics metrics) {
+        this.metrics = metrics;
+        headerAnimator.setFrameStatsListener(metrics == null ? null : new HeaderAnimator.OnFrameStatsListener() {
+            @Override
+            public void onFrameStats(long duration, int frames, int droppedFrames) {
+                RefreshMetrics current = RefreshView.this.metrics;
+                if (current != null) {
+                    current.onHeaderAnimationFinished(duration, frames, droppedFrames);
+                }
+            }
+        });
+    }
+
+    /**
+     * 设置下拉头显示和隐藏动画的时长，单位毫秒
+     */
+    public void setHeaderAnimationDuration(long duration) {
+        headerAnimator.setDuration(duration);
+    }
+
+    /**
+     * 设置下拉头显示和隐藏动画的插值器，传入 null 时使用默认的减速插值器
+     */
+    public void setHeaderInterpolator(Interpolator interpolator) {
+        headerAnimator.setInterpolator(interpolator);
+    }
+
+    /**
+     * 结束正在进行的刷新，等同于调用 {@link RefreshCall#complete()}，可以在任意线程中调用
+     * 使用 {@link PullToRefreshListener} 时 onRefresh 返回后会自动结束，不再需要手动调用
+     */
+    public void finishRefreshing() {
+        RefreshCall call = currentCall;
+        if (call != null) {
+            call.complete();
+            return;
+        }
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    finishRefreshing();
+                }
+            });
+            return;
+        }
+        currentStatus = PULL_STATUS.STATUS_REFRESH_FINISHED;
+        updatedAtStore.put(mId, System.currentTimeMillis());
+        hideHeader();
+    }
+
+    /**
+     * 将下拉头移动到指定的偏移量
+     * 只修改下拉头和内容的 translationY，不会触发 measure 和 layout，用于拖动和动画过程中的每一帧
+     */
+    private void moveHeader(int offset) {
+        headerOffset = offset;
+        boolean visible = offset > hideHeaderHeight;
+        if (visible != headerVisible) {
+            headerVisible = visible;
+            if (visible) {
+                refreshUpdatedAtValue();
+            } else {
+                removeCallbacks(updatedAtTickRunnable);
+            }
+        }
+        float translationY = offset - headerLayoutParams.topMargin;
+        for (int i = 0, count = getChildCount(); i < count; i++) {
+            getChildAt(i).setTranslationY(translationY);
+        }
+        if (offset != lastProgressOffset) {
+            lastProgressOffset = offset;
+            dispatchPullProgress(offset);
+        }
+    }
+
+    /**
+     * 根据下拉头的偏移量计算下拉进度，更新箭头并回调下拉进度监听器
+     * 拖动和回滚动画都会经过这里，箭头的角度完全由进度决定，不需要额外的动画对象
+     */
+    private void dispatchPullProgress(int offset) {
+        float progress = hideHeaderHeight == 0 ? 0f : (float) (offset - hideHeaderHeight) / -hideHeaderHeight;
+        if (headerInflated) {
+            arrow.setRotation(getArrowRotation(progress));
+        }
+        if (mProgressListener != null) {
+            mProgressListener.onPullProgress(progress, offset - hideHeaderHeight);
+        }
+    }
+
+    /**
+     * 箭头的角度，进度小于 {@link #ARROW_FLIP_START} 时向下，到达 1（松开即可刷新）时完全翻转向上
+     */
+    static float getArrowRotation(float progress) {
+        float fraction = (progress - ARROW_FLIP_START) / (1f - ARROW_FLIP_START);
+        if (fraction <= 0f) {
+            return 0f;
+        } else if (fraction >= 1f) {
+            return 180f;
+        }
+        return 180f * fraction;
+    }
+
+    /**
+     * 注册下拉进度的监听器，自定义下拉头可以据此与手指同步播放动画
+     */
+    public void setOnPullProgressListener(OnPullProgressListener listener) {
+        mProgressListener = listener;
+    }
+
+    /**
+     * 将下拉头当前的偏移量提交到布局中，只在拖动或动画结束、下拉头停止移动时调用一次
+     * 平移会在同一次绘制前被清零，因此不会出现闪动
+     */
+    private void commitHeaderOffset() {
+        if (headerLayoutParams.topMargin != headerOffset) {
+            headerLayoutParams.topMargin = headerOffset;
             header.setLayoutParams(headerLayoutParams);
         }
+        moveHeader(headerOffset);
+    }
 
+    /**
+     * 将下拉头回滚到刚好完全显示的位置，动画结束后进入正在刷新状态，并回调下拉刷新监听器
+     */
+    private void showRefreshingHeader() {
+        headerAnimator.animateTo(0, new HeaderAnimator.OnAnimationEndListener() {
+            @Override
+            public void onAnimationEnd() {
+                commitHeaderOffset();
+                startRefresh();
+            }
+        });
     }
 
     /**
-     * 隐藏下拉头的任务，当未进行下拉刷新或下拉刷新完成后，此任务将会使下拉头重新隐藏
+     * 进入正在刷新状态，并在线程池中回调下拉刷新监听器
+     * 已有刷新正在进行时，多次下拉会合并到同一次刷新中
      */
-    class HideHeaderTask extends AsyncTask<Void, Integer, Integer> {
+    private RefreshCall startRefresh() {
+        ensureHeader();
+        RefreshCall inFlight = currentCall;
+        currentStatus = PULL_STATUS.STATUS_REFRESHING;
+        updateHeaderView();
+        lastStatus = currentStatus;
+        if (inFlight != null) {
+            return inFlight;
+        }
+        return dispatchRefresh();
+    }
 
-        @Override
-        protected Integer doInBackground(Void... params) {
-            int topMargin = headerLayoutParams.topMargin;
-            while (true) {
-                topMargin = topMargin + SCROLL_SPEED;
-                if (topMargin <= hideHeaderHeight) {
-                    topMargin = hideHeaderHeight;
-                    break;
+    /**
+     * 创建一次刷新，并在线程池中回调下拉刷新监听器，不改变下拉头的状态
+     */
+    private RefreshCall dispatchRefresh() {
+        final RefreshCall call = new RefreshCall(refreshFinishListener);
+        currentCall = call;
+        if (metrics != null) {
+            refreshStartTime = SystemClock.uptimeMillis();
+        }
+        if (refreshTimeout > 0) {
+            mainHandler.postDelayed(refreshTimeoutRunnable, refreshTimeout);
+        }
+        final OnRefreshListener listener = mListener;
+        if (listener == null) {
+            call.complete();
+            return call;
+        }
+        refreshExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (!call.isDone()) {
+                    listener.onRefresh(call);
                 }
-                publishProgress(topMargin);
-                SystemClock.sleep(10);
             }
-            return topMargin;
+        });
+        return call;
+    }
+
+    /**
+     * 刷新结束后，在主线程中记录更新时间并隐藏下拉头
+     */
+    private void onRefreshFinished(RefreshCall call) {
+        if (call != currentCall) {
+            return;
         }
+        currentCall = null;
+        mainHandler.removeCallbacks(refreshTimeoutRunnable);
+        if (metrics != null) {
+            metrics.onRefreshFinished(SystemClock.uptimeMillis() - refreshStartTime, call);
+        }
+        if (call.isCompleted()) {
+            updatedAtStore.put(mId, System.currentTimeMillis());
+        }
+        if (currentStatus == PULL_STATUS.STATUS_REFRESHING) {
+            // 后台刷新时下拉头没有显示，也可能正在被拖动，不需要隐藏
+            currentStatus = PULL_STATUS.STATUS_REFRESH_FINISHED;
+            hideHeader();
+        }
+        Runnable update = call.takeUpdate();
+        if (update != null) {
+            // 隐藏动画由下一帧的动画回调驱动，数据更新也放到同一帧的动画回调中，两者只触发一次布局
+            ViewCompat.postOnAnimation(this, update);
+        }
+    }
 
+    private final RefreshCall.OnFinishListener refreshFinishListener = new RefreshCall.OnFinishListener() {
         @Override
-        protected void onProgressUpdate(Integer ... topMargin) {
-            headerLayoutParams.topMargin = topMargin[0];
-            header.setLayoutParams(headerLayoutParams);
+        public void onFinish(final RefreshCall call) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                onRefreshFinished(call);
+            } else {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        onRefreshFinished(call);
+                    }
+                });
+            }
         }
+    };
 
+    private final Runnable refreshTimeoutRunnable = new Runnable() {
         @Override
-        protected void onPostExecute(Integer topMargin) {
-            headerLayoutParams.topMargin = topMargin;
-            header.setLayoutParams(headerLayoutParams);
+        public void run() {
+            RefreshCall call = currentCall;
+            if (call != null) {
+                call.timeout();
+            }
+        }
+    };
+
+    /**
+     * 隐藏下拉头，当未进行下拉刷新或下拉刷新完成后，下拉头将会回滚到隐藏位置
+     */
+    private void hideHeader() {
+        if (!loadOnce) {
             currentStatus = PULL_STATUS.STATUS_REFRESH_FINISHED;
+            return;
+        }
+        headerAnimator.animateTo(hideHeaderHeight, new HeaderAnimator.OnAnimationEndListener() {
+            @Override
+            public void onAnimationEnd() {
+                commitHeaderOffset();
+                currentStatus = PULL_STATUS.STATUS_REFRESH_FINISHED;
+            }
+        });
+    }
+
+    /**
+     * 根据当前内容的滚动状态来设定 {@link #ableToPull}
+     * 的值，只在下拉开始之前判断，这样可以判断出当前应该是滚动内容，还是应该进行下拉
+     *
+     * @param y 当前触摸点的纵坐标，允许下拉时作为判断 touchSlop 的起点
+     */
+    private void setCanAbleToPull(float y) {
+        // 正在加载更多或正在刷新时不允许下拉刷新
+        boolean atTop = scrollTarget.isAtTop();
+        if (atTop && loadMoreCall == null && currentStatus != PULL_STATUS.STATUS_REFRESHING) {
+            // 内容滚动到了最顶部，此时应该允许下拉刷新
+            slopAnchorY = y;
+            ableToPull = true;
+        } else {
+            if (!atTop && headerOffset != hideHeaderHeight && !headerAnimator.isRunning()) {
+                moveHeader(hideHeaderHeight);
+                commitHeaderOffset();
+            }
+            ableToPull = false;
+        }
+    }
+
+    /**
+     * 加载下拉头的布局，替换掉占位View，只会加载一次
+     */
+    @VisibleForTesting
+    void ensureHeader() {
+        if (headerInflated) {
+            return;
+        }
+        headerInflated = true;
+        TraceCompat.beginSection("RefreshView.inflateHeader");
+        View placeholder = header;
+        header = LayoutInflater.from(getContext()).inflate(R.layout.pull_to_refresh, this, false);
+        progressBar = (ProgressBar) header.findViewById(R.id.progress_bar);
+        arrow = (ImageView) header.findViewById(R.id.arrow);
+        description = (TextView) header.findViewById(R.id.description);
+        updateAt = (TextView) header.findViewById(R.id.updated_at);
+        // 沿用占位View的布局参数和平移，替换后下拉头的位置保持不变
+        header.setTranslationY(placeholder.getTranslationY());
+        LayoutParams params = (LayoutParams) placeholder.getLayoutParams();
+        removeViewAt(0);
+        addView(header, 0, params);
+        TraceCompat.endSection();
+        RefreshMemoryStats.onHeaderInflated();
+        // 加载布局时已经从 Resources 的缓存中取得了图片，不再需要保持引用
+        sPreloadedArrow = null;
+        if (headerVisible) {
+            refreshUpdatedAtValue();
+        }
+    }
+
+    /**
+     * 释放已加载的下拉头，换回同样高度的占位View，下一次需要时再由 {@link #ensureHeader()} 重新加载
+     * 只在下拉头完全隐藏且没有拖动、动画和刷新时释放
+     *
+     * @param level 内存等级，离开窗口时为 {@link RefreshMemoryStats#LEVEL_DETACHED}
+     */
+    private void recycleHeader(int level) {
+        if (!headerInflated || headerVisible || isBeingDragged || nestedDragging || headerAnimator.isRunning()
+                || currentStatus != PULL_STATUS.STATUS_REFRESH_FINISHED) {
+            return;
         }
+        headerInflated = false;
+        View inflated = header;
+        header = new View(getContext());
+        header.setTranslationY(inflated.getTranslationY());
+        LayoutParams params = (LayoutParams) inflated.getLayoutParams();
+        removeViewAt(0);
+        addView(header, 0, params);
+        progressBar = null;
+        arrow = null;
+        description = null;
+        updateAt = null;
+        updatedAtLabel = null;
+        // 重新加载后需要按当前状态重新设置下拉头的文字
+        lastStatus = PULL_STATUS.STATUS_REFRESH_FINISHED;
+        RefreshMemoryStats.onHeaderReleased(level);
     }
 
+    /**
+     * 提前加载下拉刷新需要的资源，可以在任意线程中调用，例如在 Application.onCreate 中交给后台线程执行
+     * 会加载上次更新时间的 SharedPreferences 并读入内存，解码下拉头中的箭头图片放入 Resources 的缓存，
+     * 之后在主线程中创建 RefreshView、读取上次更新时间和加载下拉头时都不会再读取磁盘或解码图片。
+     * 下拉头的布局只能在主线程中加载，需要时可以再调用 {@link #preinflateHeaderWhenIdle()}
+     */
+    public static void preload(Context context) {
+        TraceCompat.beginSection("RefreshView.preload");
+        Context appContext = context.getApplicationContext();
+        PreferencesUpdatedAtStore.getInstance(appContext).preload();
+        Drawable arrow = ResourcesCompat.getDrawable(appContext.getResources(), R.drawable.indicator_arrow, null);
+        sPreloadedArrow = arrow != null ? arrow.getConstantState() : null;
+        TraceCompat.endSection();
+    }
+
+    /**
+     * 在主线程空闲时提前加载下拉头的布局，避免第一次下拉时加载，需要在主线程中调用
+     */
+    public void preinflateHeaderWhenIdle() {
+        if (headerInflated) {
+            return;
+        }
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                ensureHeader();
+                return false;
+            }
+        });
+    }
+
+    /**
+     * 更新下拉头中的信息
+     */
+    private void updateHeaderView() {
+        if (!headerInflated) {
+            return;
+        }
+        if (lastStatus != currentStatus) {
+            if (currentStatus == PULL_STATUS.STATUS_PULL_TO_REFRESH) {
+                description.setText(getResources().getString(R.string.pull_to_refresh));
+                arrow.setVisibility(View.VISIBLE);
+                progressBar.setVisibility(View.GONE);
+            } else if (currentStatus == PULL_STATUS.STATUS_RELEASE_TO_REFRESH) {
+                description.setText(getResources().getString(R.string.release_to_refresh));
+                arrow.setVisibility(View.VISIBLE);
+                progressBar.setVisibility(View.GONE);
+            } else if (currentStatus == PULL_STATUS.STATUS_REFRESHING) {
+                description.setText(getResources().getString(R.string.refreshing));
+                progressBar.setVisibility(View.VISIBLE);
+                arrow.setVisibility(View.GONE);
+            }
+            refreshUpdatedAtValue();
+        }
+    }
+
+    /**
+     * 刷新下拉头中上次更新时间的文字描述
+     * 文字按时间段缓存，下拉头可见时只在到达下一个时间段时定时刷新一次
+     */
+    @VisibleForTesting
+    void refreshUpdatedAtValue() {
+        if (!headerInflated) {
+            return;
+        }
+        long lastUpdateTime = updatedAtStore.get(mId);
+        long currentTime = System.currentTimeMillis();
+        String updateAtValue = updatedAtFormatter.format(lastUpdateTime, currentTime);
+        if (updateAtValue != updatedAtLabel) {
+            // 同一个时间段内格式化结果是同一个对象，无需重复设置
+            updatedAtLabel = updateAtValue;
+            updateAt.setText(updateAtValue);
+        }
+        removeCallbacks(updatedAtTickRunnable);
+        long nextUpdateTime = updatedAtFormatter.getNextUpdateTime();
+        if (headerVisible && nextUpdateTime != Long.MAX_VALUE) {
+            postDelayed(updatedAtTickRunnable, Math.max(0, nextUpdateTime - currentTime));
+        }
+    }
+
+    private final Runnable updatedAtTickRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refreshUpdatedAtValue();
+        }
+    };
+
     /**
      * 下拉刷新的监听器，使用下拉刷新的地方应该注册此监听器来获取刷新回调
      */
@@ -426,4 +1419,29 @@ public class RefreshView extends LinearLayout implements View.OnTouchListener {
         // 刷新时会去回调此方法，在方法内编写具体的刷新逻辑。注意此方法是在子线程中调用的， 可以不必另开线程来进行耗时操作
         void onRefresh();
     }
+
+    /**
+     * 下拉进度的监听器，拖动和回滚动画的每一帧都会回调，实现中不应该分配内存
+     */
+    public interface OnPullProgressListener {
+        // progress 为 0 时下拉头完全隐藏，为 1 时刚好完全显示（松开即可刷新），继续下拉会大于 1；distance 为下拉的像素距离
+        void onPullProgress(float progress, int distance);
+    }
+
+    /**
+     * 加载更多的监听器
+     */
+    public interface OnLoadMoreListener {
+        // 加载下一页时会在设置的线程池中回调此方法，加载完成后调用 call.complete()，失败时调用 call.fail()
+        // 这是最后一页时在 call.complete() 之前调用 setHasMoreData(false)，该方法可以在此线程中直接调用；其他控件方法都需要在主线程中调用
+        void onLoadMore(RefreshCall call);
+    }
+
+    /**
+     * 异步的下拉刷新监听器，通过 {@link RefreshCall} 通知刷新结束
+     */
+    public interface OnRefreshListener {
+        // 刷新时会在设置的线程池中回调此方法，刷新逻辑完成后调用 call.complete()，数据有变化时可以调用 call.complete(listDiffer.calculate(newList))，也可以把 call 交给其他异步任务去完成
+        void onRefresh(RefreshCall call);
+    }
 }
\ No newline at end of file
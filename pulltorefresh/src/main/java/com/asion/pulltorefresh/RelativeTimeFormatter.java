@@ -0,0 +1,81 @@
+package com.asion.pulltorefresh;
+
+import android.content.res.Resources;
+
+import com.asion.asionpulltorefresh.R;
+
+/**
+ * 上次更新时间的相对时间格式化
+ * 格式化结果按时间段缓存，在到达下一个时间段的边界之前重复调用不会产生任何计算和内存分配。
+ * 文字全部来自资源文件，单位使用 plurals，可以按语言本地化。
+ */
+class RelativeTimeFormatter {
+
+    private final Resources resources;
+
+    private String cachedLabel; // 缓存的格式化结果
+    private long cachedUpdateTime; // 缓存结果对应的上次更新时间
+    private long validFrom; // 缓存结果有效的起始时间（包含）
+    private long validUntil; // 缓存结果有效的结束时间（不包含），也是下一次需要刷新文字的时间
+
+    RelativeTimeFormatter(Resources resources) {
+        this.resources = resources;
+    }
+
+    /**
+     * 根据上次更新时间和当前时间获取文字描述，同一个时间段内返回同一个对象
+     */
+    String format(long lastUpdateTime, long now) {
+        if (cachedLabel != null && lastUpdateTime == cachedUpdateTime && now >= validFrom && now < validUntil) {
+            return cachedLabel;
+        }
+        cachedUpdateTime = lastUpdateTime;
+        long timePassed = now - lastUpdateTime;
+        if (lastUpdateTime == UpdatedAtStore.NOT_UPDATED) {
+            validFrom = Long.MIN_VALUE;
+            validUntil = Long.MAX_VALUE;
+            cachedLabel = resources.getString(R.string.not_updated_yet);
+        } else if (timePassed < 0) {
+            validFrom = Long.MIN_VALUE;
+            validUntil = lastUpdateTime;
+            cachedLabel = resources.getString(R.string.time_error);
+        } else if (timePassed < RefreshView.ONE_MINUTE) {
+            validFrom = lastUpdateTime;
+            validUntil = lastUpdateTime + RefreshView.ONE_MINUTE;
+            cachedLabel = resources.getString(R.string.updated_just_now);
+        } else if (timePassed < RefreshView.ONE_HOUR) {
+            cachedLabel = formatBucket(lastUpdateTime, timePassed, RefreshView.ONE_MINUTE, R.plurals.updated_minutes_ago);
+        } else if (timePassed < RefreshView.ONE_DAY) {
+            cachedLabel = formatBucket(lastUpdateTime, timePassed, RefreshView.ONE_HOUR, R.plurals.updated_hours_ago);
+        } else if (timePassed < RefreshView.ONE_MONTH) {
+            cachedLabel = formatBucket(lastUpdateTime, timePassed, RefreshView.ONE_DAY, R.plurals.updated_days_ago);
+        } else if (timePassed < RefreshView.ONE_YEAR) {
+            cachedLabel = formatBucket(lastUpdateTime, timePassed, RefreshView.ONE_MONTH, R.plurals.updated_months_ago);
+        } else {
+            cachedLabel = formatBucket(lastUpdateTime, timePassed, RefreshView.ONE_YEAR, R.plurals.updated_years_ago);
+        }
+        return cachedLabel;
+    }
+
+    /**
+     * 获取当前缓存的文字需要刷新的时间，从未更新过时返回 {@link Long#MAX_VALUE}
+     */
+    long getNextUpdateTime() {
+        return validUntil;
+    }
+
+    /**
+     * 清除缓存，例如语言设置发生变化后
+     */
+    void clear() {
+        cachedLabel = null;
+    }
+
+    private String formatBucket(long lastUpdateTime, long timePassed, long unit, int pluralsId) {
+        int count = (int) (timePassed / unit);
+        validFrom = lastUpdateTime + count * unit;
+        validUntil = validFrom + unit;
+        String value = resources.getQuantityString(pluralsId, count, count);
+        return resources.getString(R.string.updated_at, value);
+    }
+}
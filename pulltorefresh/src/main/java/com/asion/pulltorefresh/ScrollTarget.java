@@ -0,0 +1,26 @@
+package com.asion.pulltorefresh;
+
+import android.view.View;
+
+/**
+ * 下拉刷新控件中可滚动的内容
+ * 用于判断内容是否已经滚动到顶部，只有滚动到顶部时才允许下拉。常用控件的实现见 {@link ScrollTargets}
+ */
+public interface ScrollTarget {
+
+    /**
+     * 获取可滚动内容的View
+     */
+    View getView();
+
+    /**
+     * 内容是否已经滚动到顶部，内容为空时也应该返回 true
+     */
+    boolean isAtTop();
+
+    /**
+     * 最后一个可见的Item之后还剩余的Item数量，用于提前加载下一页
+     * 没有Item概念的内容在滚动到底部时返回 0，否则返回 {@link Integer#MAX_VALUE}
+     */
+    int getRemainingItemCount();
+}
@@ -0,0 +1,173 @@
+package com.asion.pulltorefresh;
+
+import android.support.v4.view.NestedScrollingChild;
+import android.support.v7.widget.RecyclerView;
+import android.view.View;
+import android.widget.AbsListView;
+import android.widget.Adapter;
+import android.widget.ListView;
+import android.widget.ScrollView;
+
+/**
+ * 常用可滚动控件的 {@link ScrollTarget} 实现
+ */
+public final class ScrollTargets {
+
+    private ScrollTargets() {
+    }
+
+    /**
+     * 根据View的类型创建对应的 {@link ScrollTarget}
+     */
+    public static ScrollTarget from(View view) {
+        if (view instanceof AbsListView) {
+            return new AbsListViewTarget((AbsListView) view);
+        } else if (view instanceof RecyclerView) {
+            return new RecyclerViewTarget((RecyclerView) view);
+        } else if (view instanceof ScrollView) {
+            return new ScrollViewTarget((ScrollView) view);
+        } else {
+            return new NestedScrollingChildTarget(view);
+        }
+    }
+
+    /**
+     * ListView、GridView 等 AbsListView 的实现
+     */
+    public static class AbsListViewTarget implements ScrollTarget {
+
+        private final AbsListView listView;
+
+        public AbsListViewTarget(AbsListView listView) {
+            this.listView = listView;
+        }
+
+        @Override
+        public View getView() {
+            return listView;
+        }
+
+        @Override
+        public boolean isAtTop() {
+            View firstChild = listView.getChildAt(0);
+            if (firstChild == null) {
+                // 如果 ListView 中没有元素，也应该允许下拉刷新
+                return true;
+            }
+            // 第一个Item可见，并且它的上边缘距离父布局为 0，就说明 ListView 滚动到了最顶部
+            return listView.getFirstVisiblePosition() == 0
+                    && firstChild.getTop() >= listView.getPaddingTop();
+        }
+
+        @Override
+        public int getRemainingItemCount() {
+            Adapter adapter = listView.getAdapter();
+            if (adapter == null || listView.getChildCount() == 0) {
+                // 列表为空时交给下拉刷新，不需要加载下一页
+                return Integer.MAX_VALUE;
+            }
+            // 只计算数据的位置，不包括 ListView 的头部和底部View（例如加载更多的底部View）
+            int headerCount = 0;
+            int footerCount = 0;
+            if (listView instanceof ListView) {
+                headerCount = ((ListView) listView).getHeaderViewsCount();
+                footerCount = ((ListView) listView).getFooterViewsCount();
+            }
+            int dataCount = adapter.getCount() - headerCount - footerCount;
+            int lastDataPosition = listView.getLastVisiblePosition() - headerCount;
+            return Math.max(0, dataCount - 1 - lastDataPosition);
+        }
+    }
+
+    /**
+     * RecyclerView 的实现，RecyclerView 同时通过嵌套滚动驱动下拉头
+     */
+    public static class RecyclerViewTarget implements ScrollTarget {
+
+        private final RecyclerView recyclerView;
+
+        public RecyclerViewTarget(RecyclerView recyclerView) {
+            this.recyclerView = recyclerView;
+        }
+
+        @Override
+        public View getView() {
+            return recyclerView;
+        }
+
+        @Override
+        public boolean isAtTop() {
+            return !recyclerView.canScrollVertically(-1);
+        }
+
+        @Override
+        public int getRemainingItemCount() {
+            RecyclerView.LayoutManager layoutManager = recyclerView.getLayoutManager();
+            int childCount = recyclerView.getChildCount();
+            if (layoutManager == null || childCount == 0) {
+                // 列表为空时交给下拉刷新，不需要加载下一页
+                return Integer.MAX_VALUE;
+            }
+            // 子View按布局顺序排列，最后一个子View即为最后一个可见的Item，适用于任意 LayoutManager
+            int lastPosition = recyclerView.getChildAdapterPosition(recyclerView.getChildAt(childCount - 1));
+            if (lastPosition == RecyclerView.NO_POSITION) {
+                return Integer.MAX_VALUE;
+            }
+            return Math.max(0, layoutManager.getItemCount() - 1 - lastPosition);
+        }
+    }
+
+    /**
+     * ScrollView 的实现
+     */
+    public static class ScrollViewTarget implements ScrollTarget {
+
+        private final ScrollView scrollView;
+
+        public ScrollViewTarget(ScrollView scrollView) {
+            this.scrollView = scrollView;
+        }
+
+        @Override
+        public View getView() {
+            return scrollView;
+        }
+
+        @Override
+        public boolean isAtTop() {
+            return scrollView.getScrollY() <= 0;
+        }
+
+        @Override
+        public int getRemainingItemCount() {
+            return scrollView.canScrollVertically(1) ? Integer.MAX_VALUE : 0;
+        }
+    }
+
+    /**
+     * 通用的实现，适用于 NestedScrollView 等 {@link NestedScrollingChild} 以及其他支持垂直滚动的View
+     */
+    public static class NestedScrollingChildTarget implements ScrollTarget {
+
+        private final View view;
+
+        public NestedScrollingChildTarget(View view) {
+            this.view = view;
+        }
+
+        @Override
+        public View getView() {
+            return view;
+        }
+
+        @Override
+        public boolean isAtTop() {
+            return !view.canScrollVertically(-1);
+        }
+
+        @Override
+        public int getRemainingItemCount() {
+            return view.canScrollVertically(1) ? Integer.MAX_VALUE : 0;
+        }
+    }
+}
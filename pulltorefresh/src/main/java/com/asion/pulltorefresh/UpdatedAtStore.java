@@ -0,0 +1,22 @@
+package com.asion.pulltorefresh;
+
+/**
+ * 上次更新时间的存储
+ * 默认实现为 {@link PreferencesUpdatedAtStore}，也可以替换为文件、数据库等其他存储方式，
+ * 通过 {@link RefreshView#setUpdatedAtStore(UpdatedAtStore)} 设置。get 会在主线程中调用，实现时应避免阻塞。
+ */
+public interface UpdatedAtStore {
+
+    // 从未更新过
+    long NOT_UPDATED = -1;
+
+    /**
+     * 获取指定 id 的上次更新时间，从未更新过时返回 {@link #NOT_UPDATED}
+     */
+    long get(int id);
+
+    /**
+     * 记录指定 id 的上次更新时间
+     */
+    void put(int id, long time);
+}
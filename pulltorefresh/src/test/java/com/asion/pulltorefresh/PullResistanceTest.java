@@ -0,0 +1,61 @@
+package com.asion.pulltorefresh;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 阻力曲线的计算，包括上限和推回
+ */
+public class PullResistanceTest {
+
+    private static final int HEADER_HEIGHT = 120;
+    private static final float DELTA = 0.001f;
+
+    @Test
+    public void linear_scalesFingerMovement() {
+        PullResistance resistance = PullResistance.linear(0.5f);
+        assertEquals(50f, resistance.pull(0f, 100f, HEADER_HEIGHT), DELTA);
+        assertEquals(25f, resistance.pull(50f, -50f, HEADER_HEIGHT), DELTA);
+    }
+
+    @Test
+    public void pull_neverGoesBelowZero() {
+        PullResistance resistance = PullResistance.linear(0.5f);
+        assertEquals(0f, resistance.pull(10f, -1000f, HEADER_HEIGHT), DELTA);
+    }
+
+    @Test
+    public void damped_largeSampleIsClampedToMaxDistance() {
+        // 最大为 1 倍下拉头高度，单个很远的采样点不能越过上限
+        PullResistance resistance = PullResistance.damped(0.5f, 1f);
+        assertEquals(HEADER_HEIGHT, resistance.pull(0f, 1000f, HEADER_HEIGHT), DELTA);
+    }
+
+    @Test
+    public void damped_atMaxDistanceCanBePushedBack() {
+        PullResistance resistance = PullResistance.damped(0.5f, 1f);
+        float distance = resistance.pull(0f, 1000f, HEADER_HEIGHT);
+        // 到达上限后继续下拉不再移动
+        assertEquals(distance, resistance.pull(distance, 10f, HEADER_HEIGHT), DELTA);
+        // 向上推回时不衰减，按基础系数移动
+        assertEquals(distance - 5f, resistance.pull(distance, -10f, HEADER_HEIGHT), DELTA);
+    }
+
+    @Test
+    public void damped_factorDecreasesWithDistance() {
+        PullResistance resistance = PullResistance.damped(0.5f, 2f);
+        float near = resistance.getFactor(10f, HEADER_HEIGHT);
+        float far = resistance.getFactor(200f, HEADER_HEIGHT);
+        assertTrue(near > far);
+        assertEquals(0f, resistance.getFactor(2f * HEADER_HEIGHT, HEADER_HEIGHT), DELTA);
+    }
+
+    @Test
+    public void damped_withoutHeaderHeightHasNoLimit() {
+        // 下拉头还没有测量时退化为固定阻力
+        PullResistance resistance = PullResistance.damped(0.5f, 1f);
+        assertEquals(500f, resistance.pull(0f, 1000f, 0), DELTA);
+    }
+}
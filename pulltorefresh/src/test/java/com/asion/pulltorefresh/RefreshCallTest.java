@@ -0,0 +1,98 @@
+package com.asion.pulltorefresh;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 刷新句柄的状态转换：只有第一次结束操作生效
+ */
+public class RefreshCallTest {
+
+    /**
+     * 记录结束回调的次数
+     */
+    private static class CountingListener implements RefreshCall.OnFinishListener {
+        int count;
+
+        @Override
+        public void onFinish(RefreshCall call) {
+            count++;
+        }
+    }
+
+    private final CountingListener listener = new CountingListener();
+    private final RefreshCall call = new RefreshCall(listener);
+
+    @Test
+    public void newCall_isRunning() {
+        assertFalse(call.isDone());
+        assertFalse(call.isCompleted());
+        assertFalse(call.isCancelled());
+        assertFalse(call.isFailed());
+        assertEquals(0, listener.count);
+    }
+
+    @Test
+    public void complete_finishesOnce() {
+        assertTrue(call.complete());
+        assertTrue(call.isDone());
+        assertTrue(call.isCompleted());
+        assertEquals(1, listener.count);
+    }
+
+    @Test
+    public void firstOutcomeWins() {
+        assertTrue(call.cancel());
+        assertFalse(call.complete());
+        assertFalse(call.fail());
+        assertFalse(call.timeout());
+        assertTrue(call.isCancelled());
+        assertFalse(call.isCompleted());
+        assertEquals(1, listener.count);
+    }
+
+    @Test
+    public void fail_isFailedButNotCancelled() {
+        assertTrue(call.fail());
+        assertTrue(call.isFailed());
+        assertFalse(call.isCancelled());
+        assertFalse(call.isTimedOut());
+    }
+
+    @Test
+    public void timeout_isCancelledAndFailed() {
+        assertTrue(call.timeout());
+        assertTrue(call.isTimedOut());
+        assertTrue(call.isCancelled());
+        assertTrue(call.isFailed());
+        assertFalse(call.isCompleted());
+    }
+
+    @Test
+    public void completeWithUpdate_canBeTakenOnce() {
+        Runnable update = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        assertTrue(call.complete(update));
+        assertSame(update, call.takeUpdate());
+        assertNull(call.takeUpdate());
+    }
+
+    @Test
+    public void lateUpdate_isDropped() {
+        call.cancel();
+        assertFalse(call.complete(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }));
+        assertNull(call.takeUpdate());
+    }
+}
@@ -0,0 +1,73 @@
+package com.asion.pulltorefresh;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 刷新时效策略的最小间隔和有效期边界
+ */
+public class RefreshPolicyTest {
+
+    private static final long NOW = 1000000L;
+    private final RefreshPolicy policy = new RefreshPolicy(10000, 60000, true);
+
+    @Test
+    public void throttled_insideMinInterval() {
+        assertTrue(policy.isThrottled(NOW, NOW));
+        assertTrue(policy.isThrottled(NOW - 9999, NOW));
+    }
+
+    @Test
+    public void notThrottled_atMinIntervalBoundary() {
+        assertFalse(policy.isThrottled(NOW - 10000, NOW));
+    }
+
+    @Test
+    public void notThrottled_whenNeverUpdated() {
+        assertFalse(policy.isThrottled(UpdatedAtStore.NOT_UPDATED, NOW));
+    }
+
+    @Test
+    public void notThrottled_whenClockMovedBack() {
+        assertFalse(policy.isThrottled(NOW + 1, NOW));
+    }
+
+    @Test
+    public void fresh_insideTimeToLive() {
+        assertFalse(policy.isStale(NOW, NOW));
+        assertFalse(policy.isStale(NOW - 59999, NOW));
+    }
+
+    @Test
+    public void stale_atTimeToLiveBoundary() {
+        assertTrue(policy.isStale(NOW - 60000, NOW));
+    }
+
+    @Test
+    public void stale_whenNeverUpdatedOrClockMovedBack() {
+        assertTrue(policy.isStale(UpdatedAtStore.NOT_UPDATED, NOW));
+        assertTrue(policy.isStale(NOW + 1, NOW));
+    }
+
+    @Test
+    public void always_neverThrottlesAndNeverExpires() {
+        assertFalse(RefreshPolicy.ALWAYS.isThrottled(NOW, NOW));
+        assertFalse(RefreshPolicy.ALWAYS.isStale(0, NOW));
+        assertFalse(RefreshPolicy.ALWAYS.isRevalidateOnShow());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeInterval_isRejected() {
+        new RefreshPolicy(-1, 0, false);
+    }
+
+    @Test
+    public void getters_returnConstructorValues() {
+        assertEquals(10000, policy.getMinInterval());
+        assertEquals(60000, policy.getTimeToLive());
+        assertTrue(policy.isRevalidateOnShow());
+    }
+}
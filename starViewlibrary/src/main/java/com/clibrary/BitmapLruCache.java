@@ -0,0 +1,23 @@
+package com.clibrary;
+
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+
+/**
+ * 按图片占用的字节数淘汰的 LRU 缓存，供 {@link StarBitmapCache} 和 {@link StarStripCache} 共用
+ * 缓存中的图片会被多个 View 同时使用，取出后不能 recycle。
+ */
+class BitmapLruCache extends LruCache<String, Bitmap> {
+
+    /**
+     * @param divisor 缓存上限为应用最大可用内存的 1/divisor
+     */
+    BitmapLruCache(int divisor) {
+        super((int) Math.min(Runtime.getRuntime().maxMemory() / divisor, Integer.MAX_VALUE));
+    }
+
+    @Override
+    protected int sizeOf(String key, Bitmap value) {
+        return value.getByteCount();
+    }
+}
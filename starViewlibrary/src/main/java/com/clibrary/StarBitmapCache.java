@@ -0,0 +1,166 @@
+package com.clibrary;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * 进程内共享的星星图片缓存
+ * 以资源 id 和目标尺寸作为键，所有 {@link StarView} 共用同一份解码和缩放后的图片，按占用内存进行 LRU 淘汰。
+ * 解码时直接通过 inSampleSize 和密度缩放得到目标尺寸，不会先解码原图再缩放。
+ * 上限为应用最大可用内存的 1/64，缓存中的图片会被多个 View 同时使用，取出后不能 recycle。
+ */
+public final class StarBitmapCache {
+
+    private static final BitmapLruCache sCache = new BitmapLruCache(64);
+
+    private StarBitmapCache() {
+    }
+
+    /**
+     * 获取指定尺寸的图片，缓存中没有时解码并放入缓存
+     *
+     * @param width  目标宽度，为 0 时使用图片本身的尺寸
+     * @param height 目标高度，为 0 时使用图片本身的尺寸
+     */
+    public static Bitmap get(Resources resources, int resId, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            width = 0;
+            height = 0;
+        }
+        String key = resId + ":" + width + "x" + height;
+        Bitmap bitmap = sCache.get(key);
+        if (bitmap == null) {
+            bitmap = decode(resources, resId, width, height);
+            if (bitmap != null) {
+                sCache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * 获取指定尺寸的 ALPHA_8 遮罩图片，只保留图片的透明度，每个像素只占 1 字节，绘制时由 Paint 的颜色着色
+     *
+     * @param width  目标宽度，为 0 时使用图片本身的尺寸
+     * @param height 目标高度，为 0 时使用图片本身的尺寸
+     */
+    public static Bitmap getMask(Resources resources, int resId, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            width = 0;
+            height = 0;
+        }
+        String key = "mask:" + resId + ":" + width + "x" + height;
+        Bitmap mask = sCache.get(key);
+        if (mask == null) {
+            Bitmap bitmap = decode(resources, resId, width, height);
+            if (bitmap == null) {
+                return null;
+            }
+            mask = bitmap.extractAlpha();
+            mask.setDensity(bitmap.getDensity());
+            // 解码出的彩色图片只用于提取遮罩，不放入缓存
+            bitmap.recycle();
+            sCache.put(key, mask);
+        }
+        return mask;
+    }
+
+    /**
+     * 获取用于平铺的图片：左侧是指定尺寸的星星，右侧是宽度为 space 的透明间隔，
+     * 配合 REPEAT 模式的 BitmapShader，一次 drawRect 即可绘制任意数量的星星
+     *
+     * @param width  星星宽度
+     * @param height 星星高度
+     * @param space  星星间隔
+     * @param mask   是否使用 ALPHA_8 遮罩图片，见 {@link #getMask(Resources, int, int, int)}
+     */
+    public static Bitmap getTile(Resources resources, int resId, int width, int height, int space, boolean mask) {
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        space = Math.max(0, space);
+        String key = (mask ? "tile-mask:" : "tile:") + resId + ":" + width + "x" + height + "+" + space;
+        Bitmap tile = sCache.get(key);
+        if (tile == null) {
+            Bitmap star = mask ? getMask(resources, resId, width, height) : get(resources, resId, width, height);
+            if (star == null) {
+                return null;
+            }
+            tile = Bitmap.createBitmap(width + space, height, mask ? Bitmap.Config.ALPHA_8 : Bitmap.Config.ARGB_8888);
+            tile.setDensity(star.getDensity());
+            new Canvas(tile).drawBitmap(star, null, new Rect(0, 0, width, height), new Paint(Paint.FILTER_BITMAP_FLAG));
+            sCache.put(key, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * 清空缓存
+     */
+    public static void clear() {
+        sCache.evictAll();
+    }
+
+    /**
+     * 缩小缓存到指定的字节数以内
+     */
+    static void trimToSize(int maxSize) {
+        sCache.trimToSize(maxSize);
+    }
+
+    static int size() {
+        return sCache.size();
+    }
+
+    static int maxSize() {
+        return sCache.maxSize();
+    }
+
+    /**
+     * 解码图片，设置了目标尺寸时在解码过程中直接缩放到目标宽度
+     */
+    private static Bitmap decode(Resources resources, int resId, int width, int height) {
+        if (width == 0) {
+            return BitmapFactory.decodeResource(resources, resId);
+        }
+        // 获得图片的原始宽高
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        options.inScaled = false;
+        BitmapFactory.decodeResource(resources, resId, options);
+        int srcWidth = options.outWidth;
+        int srcHeight = options.outHeight;
+        if (srcWidth <= 0 || srcHeight <= 0) {
+            return null;
+        }
+        // 先按 2 的幂次缩小，保证缩小后仍不小于目标尺寸
+        int sampleSize = 1;
+        while (srcWidth / (sampleSize * 2) >= width && srcHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        // 再通过密度缩放到目标宽度
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inScaled = true;
+        options.inDensity = srcWidth / sampleSize;
+        options.inTargetDensity = width;
+        Bitmap bitmap = BitmapFactory.decodeResource(resources, resId, options);
+        if (bitmap == null) {
+            return null;
+        }
+        // 宽高比与目标不一致时，高度还需要再缩放一次
+        if (bitmap.getWidth() != width || bitmap.getHeight() != height) {
+            Bitmap scaled = Bitmap.createScaledBitmap(bitmap, width, height, true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+                bitmap = scaled;
+            }
+        }
+        bitmap.setDensity(resources.getDisplayMetrics().densityDpi);
+        return bitmap;
+    }
+}
@@ -0,0 +1,221 @@
+package com.clibrary;
+
+import android.graphics.Rect;
+
+/**
+ * 星星的几何模型
+ * 预先计算好每半颗星星在屏幕上的绘制区域、图片的左右半边区域以及多出的实心部分区域，
+ * 只在尺寸、数量或进度变化时重新计算，onDraw、onMeasure 和 onTouchEvent 都直接使用这里的结果，不会分配内存。
+ * 与 {@link StarView} 一致，数量和进度都以半颗星星为单位。
+ */
+class StarGeometry {
+
+    private int halfCount; // 半颗星星的总数量
+    private int starWidth; // 星星宽度
+    private int starHeight; // 星星高度
+    private int spaceWidth; // 星星间隔
+    private int left; // 绘制的起点
+    private int top;
+
+    // 实心图片的左右半边区域
+    final Rect solidSrcLeft = new Rect();
+    final Rect solidSrcRight = new Rect();
+    // 空心图片的左右半边区域
+    final Rect hollowSrcLeft = new Rect();
+    final Rect hollowSrcRight = new Rect();
+    // 每半颗星星在屏幕上的绘制区域
+    Rect[] halfDst = new Rect[0];
+
+    private float rating; // 当前进度
+    private int solidHalfCount; // 完整绘制的实心半颗星星数量
+    // 多出的实心部分，绘制在下一个半颗星星上
+    final Rect partialSrc = new Rect();
+    final Rect partialDst = new Rect();
+    private boolean hasPartial;
+
+    /**
+     * 设置星星的尺寸和位置，参数没有变化时不会重新计算
+     *
+     * @return 几何模型是否发生了变化
+     */
+    boolean setup(int halfCount, int starWidth, int starHeight, int spaceWidth, int left, int top,
+                  int solidWidth, int solidHeight, int hollowWidth, int hollowHeight) {
+        halfCount = Math.max(0, halfCount);
+        if (this.halfCount == halfCount && this.starWidth == starWidth && this.starHeight == starHeight
+                && this.spaceWidth == spaceWidth && this.left == left && this.top == top
+                && solidSrcRight.right == solidWidth && solidSrcRight.bottom == solidHeight
+                && hollowSrcRight.right == hollowWidth && hollowSrcRight.bottom == hollowHeight) {
+            return false;
+        }
+        this.starWidth = starWidth;
+        this.starHeight = starHeight;
+        this.spaceWidth = spaceWidth;
+        this.left = left;
+        this.top = top;
+
+        // 指定图片绘制区域(左半边和右半边)
+        solidSrcLeft.set(0, 0, solidWidth / 2, solidHeight);
+        solidSrcRight.set(solidWidth / 2, 0, solidWidth, solidHeight);
+        hollowSrcLeft.set(0, 0, hollowWidth / 2, hollowHeight);
+        hollowSrcRight.set(hollowWidth / 2, 0, hollowWidth, hollowHeight);
+
+        if (this.halfCount != halfCount) {
+            this.halfCount = halfCount;
+            halfDst = new Rect[halfCount];
+            for (int i = 0; i < halfCount; i++) {
+                halfDst[i] = new Rect();
+            }
+        }
+        // 指定每半颗星星在屏幕上显示的区域，右半边之后是星星间隔
+        int iconLeft = left;
+        int halfWidth = starWidth / 2;
+        for (int i = 0; i < halfCount; i++) {
+            if (i % 2 == 0) {
+                halfDst[i].set(iconLeft, top, iconLeft + halfWidth, top + starHeight);
+                iconLeft += halfWidth;
+            } else {
+                halfDst[i].set(iconLeft, top, left + (i / 2 + 1) * starWidth + (i / 2) * spaceWidth, top + starHeight);
+                iconLeft = halfDst[i].right + spaceWidth;
+            }
+        }
+        updateRating();
+        return true;
+    }
+
+    /**
+     * 设置进度，计算完整的实心部分和多出的实心部分
+     */
+    void setRating(float rating) {
+        if (this.rating != rating) {
+            this.rating = rating;
+            updateRating();
+        }
+    }
+
+    private void updateRating() {
+        float clamped = Math.max(0f, Math.min(rating, halfCount));
+        solidHalfCount = (int) clamped;
+        float fraction = clamped - solidHalfCount;
+        hasPartial = fraction > 0f && solidHalfCount < halfCount;
+        if (hasPartial) {
+            // 多出的实心部分覆盖在下一个半颗星星的左侧
+            Rect dst = halfDst[solidHalfCount];
+            Rect src = solidHalfCount % 2 == 0 ? solidSrcLeft : solidSrcRight;
+            int dstWidth = Math.round(dst.width() * fraction);
+            int srcWidth = Math.round(src.width() * fraction);
+            partialDst.set(dst.left, dst.top, dst.left + dstWidth, dst.bottom);
+            partialSrc.set(src.left, src.top, src.left + srcWidth, src.bottom);
+        }
+    }
+
+    int getHalfCount() {
+        return halfCount;
+    }
+
+    int getSolidHalfCount() {
+        return solidHalfCount;
+    }
+
+    boolean hasPartial() {
+        return hasPartial;
+    }
+
+    /**
+     * 半颗星星对应的图片区域
+     */
+    Rect getSolidSrc(int index) {
+        return index % 2 == 0 ? solidSrcLeft : solidSrcRight;
+    }
+
+    Rect getHollowSrc(int index) {
+        return index % 2 == 0 ? hollowSrcLeft : hollowSrcRight;
+    }
+
+    int getStarWidth() {
+        return starWidth;
+    }
+
+    int getStarHeight() {
+        return starHeight;
+    }
+
+    int getSpaceWidth() {
+        return spaceWidth;
+    }
+
+    int getLeft() {
+        return left;
+    }
+
+    int getTop() {
+        return top;
+    }
+
+    /**
+     * 实心部分(包括多出的实心部分)的右边界，左侧为实心，右侧为空心
+     */
+    int getSolidRight() {
+        if (hasPartial) {
+            return partialDst.right;
+        }
+        return solidHalfCount > 0 ? halfDst[solidHalfCount - 1].right : left;
+    }
+
+    /**
+     * 所有星星的总宽度，不包含最后一颗星星之后的间隔
+     */
+    int getContentWidth() {
+        int starCount = (halfCount + 1) / 2;
+        return starCount == 0 ? 0 : starCount * starWidth + (starCount - 1) * spaceWidth;
+    }
+
+    int getContentHeight() {
+        return starHeight;
+    }
+
+    /**
+     * 相邻两个半颗星星之间的距离，即图标加上间隔的一半
+     */
+    float getHalfStep() {
+        return (starWidth + spaceWidth) / 2f;
+    }
+
+    /**
+     * 根据触摸点的横坐标和步长计算进度，以半颗星星为单位
+     *
+     * @param x         相对View的横坐标
+     * @param minRating 可以设置的最小进度
+     * @param step      步长，{@link StarView#STEP_HALF}、{@link StarView#STEP_WHOLE} 或 {@link StarView#STEP_CONTINUOUS}
+     * @param clamp     触摸点超出范围时是否取最近的有效进度，为 false 时返回 -1
+     */
+    float getRatingAt(float x, int minRating, int step, boolean clamp) {
+        float halfStep = getHalfStep();
+        if (halfStep <= 0) {
+            return -1;
+        }
+        float offset = x - left;
+        //设置最显示小值以上时，可图标渐变
+        if (offset <= (minRating - 1) * halfStep || offset > halfCount * halfStep) {
+            if (!clamp) {
+                return -1;
+            }
+            offset = Math.max(0f, Math.min(offset, halfCount * halfStep));
+        }
+        float rating;
+        switch (step) {
+            case StarView.STEP_WHOLE:
+                rating = Math.min(((int) (offset / (halfStep * 2)) + 1) * 2, halfCount);
+                break;
+            case StarView.STEP_CONTINUOUS:
+                //按星星实际的像素位置计算，落在间隔中时视为整颗星星
+                int star = (int) (offset / (halfStep * 2));
+                float inStar = starWidth > 0 ? Math.min(1f, (offset - star * halfStep * 2) / starWidth) : 1f;
+                rating = Math.min((star + inStar) * 2, halfCount);
+                break;
+            default:
+                rating = Math.min((int) (offset / halfStep) + 1, halfCount);
+                break;
+        }
+        return Math.max(rating, minRating);
+    }
+}
@@ -0,0 +1,139 @@
+package com.clibrary;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * 星星控件的内存统计和释放
+ * 第一次创建 {@link StarView} 时自动注册到 Application 的 {@link ComponentCallbacks2}，
+ * 根据系统的内存等级缩小或清空 {@link StarBitmapCache}、{@link StarStripCache} 和矢量轮廓的缓存，
+ * 并让所有 StarView 释放对图片的引用，被清空的内容在下一次绘制时重新生成。可以通过这里查询缓存当前占用的内存和累计释放的内存。
+ */
+public final class StarMemoryStats {
+
+    /**
+     * 释放内存时的回调，在主线程中调用
+     */
+    public interface OnReleaseListener {
+        // level 为 ComponentCallbacks2 中的内存等级，releasedBytes 为本次释放的字节数
+        void onRelease(int level, int releasedBytes);
+    }
+
+    private static boolean sRegistered; // 是否已注册内存回调
+    private static int sTrimCount; // 累计释放的次数
+    private static long sReleasedBytes; // 累计释放的字节数
+    private static OnReleaseListener sListener;
+    // 所有 StarView 的 Drawable，只在主线程中访问，View 被回收后自动移除
+    private static final Map<StarRatingDrawable, Boolean> sDrawables = new WeakHashMap<>();
+
+    private StarMemoryStats() {
+    }
+
+    /**
+     * 注册内存回调，只会注册一次
+     */
+    public static synchronized void register(Context context) {
+        if (sRegistered) {
+            return;
+        }
+        sRegistered = true;
+        context.getApplicationContext().registerComponentCallbacks(new ComponentCallbacks2() {
+            @Override
+            public void onTrimMemory(int level) {
+                trimMemory(level);
+            }
+
+            @Override
+            public void onConfigurationChanged(Configuration newConfig) {
+            }
+
+            @Override
+            public void onLowMemory() {
+                trimMemory(TRIM_MEMORY_COMPLETE);
+            }
+        });
+    }
+
+    /**
+     * 记录 StarView 的 Drawable，内存紧张时释放它们持有的图片
+     */
+    static void track(StarRatingDrawable drawable) {
+        sDrawables.put(drawable, Boolean.TRUE);
+    }
+
+    /**
+     * 按内存等级释放缓存，需要在主线程中调用：
+     * 内存紧张或进入后台较久时全部清空；界面不可见或运行时内存偏低时清空进度条缓存，图片缓存缩小一半；
+     * 其他情况只把进度条缓存缩小一半。图片缓存被缩小或清空时，所有 StarView 同时释放对图片的引用，否则缓存无法真正回收
+     */
+    public static void trimMemory(int level) {
+        int before = StarBitmapCache.size() + StarStripCache.size();
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            StarBitmapCache.clear();
+            StarStripCache.clear();
+            StarPath.clear();
+            releaseDrawables();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            StarStripCache.clear();
+            StarBitmapCache.trimToSize(StarBitmapCache.maxSize() / 2);
+            releaseDrawables();
+        } else {
+            StarStripCache.trimToSize(StarStripCache.maxSize() / 2);
+        }
+        int released = before - (StarBitmapCache.size() + StarStripCache.size());
+        OnReleaseListener listener;
+        synchronized (StarMemoryStats.class) {
+            sTrimCount++;
+            sReleasedBytes += released;
+            listener = sListener;
+        }
+        if (listener != null) {
+            listener.onRelease(level, released);
+        }
+    }
+
+    private static void releaseDrawables() {
+        for (StarRatingDrawable drawable : sDrawables.keySet()) {
+            drawable.release();
+        }
+    }
+
+    public static synchronized void setOnReleaseListener(OnReleaseListener listener) {
+        sListener = listener;
+    }
+
+    /**
+     * 图片缓存当前占用的字节数，包括缩放后的图片、遮罩和平铺图片
+     */
+    public static int getBitmapCacheSize() {
+        return StarBitmapCache.size();
+    }
+
+    public static int getBitmapCacheMaxSize() {
+        return StarBitmapCache.maxSize();
+    }
+
+    /**
+     * 进度条缓存当前占用的字节数
+     */
+    public static int getStripCacheSize() {
+        return StarStripCache.size();
+    }
+
+    public static int getStripCacheMaxSize() {
+        return StarStripCache.maxSize();
+    }
+
+    public static synchronized int getTrimCount() {
+        return sTrimCount;
+    }
+
+    public static synchronized long getReleasedBytes() {
+        return sReleasedBytes;
+    }
+}
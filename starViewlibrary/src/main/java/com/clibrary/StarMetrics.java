@@ -0,0 +1,18 @@
+package com.clibrary;
+
+/**
+ * 星星控件的性能指标
+ * 通过 {@link StarView#setMetrics(StarMetrics)} 全局设置，所有 StarView 共用，没有设置时不会读取任何时间。
+ * 回调在主线程的绘制过程中调用，实现中应尽快返回并避免分配内存。
+ */
+public interface StarMetrics {
+
+    /**
+     * 一次绘制结束
+     *
+     * @param view        绘制的控件
+     * @param drawNanos   onDraw 的耗时，单位纳秒
+     * @param bitmapBytes 控件当前持有的图片字节数，多个控件共享的图片会重复计入
+     */
+    void onDraw(StarView view, long drawNanos, int bitmapBytes);
+}
@@ -0,0 +1,74 @@
+package com.clibrary;
+
+import android.graphics.Path;
+import android.support.v4.util.LruCache;
+
+/**
+ * 矢量星星的轮廓
+ * 按尺寸和角的数量生成星形 Path 并缓存，相同参数的 StarView 共享同一个 Path，
+ * 绘制时只需要平移画布，不需要任何图片内存，在任何密度下都能保持清晰的边缘。
+ * Path 只在主线程中生成和绘制，不做同步处理。
+ */
+final class StarPath {
+
+    // 默认的角数量
+    static final int DEFAULT_POINTS = 5;
+
+    // 缓存的 Path 数量上限，一个界面中通常只有少数几种尺寸
+    private static final int MAX_SIZE = 16;
+
+    private static final LruCache<String, Path> sCache = new LruCache<String, Path>(MAX_SIZE);
+
+    private StarPath() {
+    }
+
+    /**
+     * 获取指定尺寸和角数量的星形 Path，Path 的坐标以 (0, 0) 为左上角
+     *
+     * @param width  星星宽度
+     * @param height 星星高度
+     * @param points 角的数量，小于3时按3处理
+     */
+    static Path get(int width, int height, int points) {
+        points = Math.max(3, points);
+        String key = width + "x" + height + "#" + points;
+        Path path = sCache.get(key);
+        if (path == null) {
+            path = create(width, height, points);
+            sCache.put(key, path);
+        }
+        return path;
+    }
+
+    static void clear() {
+        sCache.evictAll();
+    }
+
+    private static Path create(int width, int height, int points) {
+        float cx = width / 2f;
+        float cy = height / 2f;
+        float outer = Math.min(width, height) / 2f;
+        //正星形的内外半径比，五角星约为0.382；角数较少时该比值过小，使用固定比例
+        float ratio = points >= 5
+                ? (float) (Math.cos(2 * Math.PI / points) / Math.cos(Math.PI / points))
+                : 0.45f;
+        float inner = outer * ratio;
+        double step = Math.PI / points;
+        //第一个角朝正上方
+        double angle = -Math.PI / 2;
+        Path path = new Path();
+        for (int i = 0; i < points * 2; i++) {
+            float radius = i % 2 == 0 ? outer : inner;
+            float x = cx + (float) (radius * Math.cos(angle));
+            float y = cy + (float) (radius * Math.sin(angle));
+            if (i == 0) {
+                path.moveTo(x, y);
+            } else {
+                path.lineTo(x, y);
+            }
+            angle += step;
+        }
+        path.close();
+        return path;
+    }
+}
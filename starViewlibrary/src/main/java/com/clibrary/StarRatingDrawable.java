@@ -0,0 +1,573 @@
+package com.clibrary;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapShader;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.Shader;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.Nullable;
+import android.support.v4.content.res.ResourcesCompat;
+
+/**
+ * 星星进度的 Drawable
+ * 从 {@link StarView} 中拆分出来的绘制逻辑，{@link StarView} 的绘制全部委托给它。
+ * 也可以单独作为 TextView 的 compound drawable，或者在 RecyclerView 的 ItemDecoration 中直接绘制，
+ * 只用于展示进度的列表项不需要再为每一行创建一个 View。
+ * 星星从 bounds 的左上角开始排列，固有宽高即所有星星占用的区域；数量和进度都以半颗星星为单位，与 {@link StarView} 一致。
+ * 所有设置都是延迟生效的，图片的解码和几何模型的计算在下一次绘制或测量时才会进行。
+ * 只用于展示时可以开启 {@link #setStripCacheEnabled(boolean)}，每种进度只绘制一次，见 {@link StarStripCache}。
+ */
+public class StarRatingDrawable extends Drawable {
+
+    //使用图片绘制
+    public static final int RENDERER_BITMAP = 0;
+    //使用矢量轮廓绘制
+    public static final int RENDERER_VECTOR = 1;
+    //使用平铺的图片绘制，实心和空心部分各一次绘制调用
+    public static final int RENDERER_TILED = 2;
+
+    private final Resources resources;
+    private final StarGeometry geometry = new StarGeometry();//预先计算的星星几何模型
+    private final Paint paint = new Paint();
+    private Paint solidPaint = paint;//绘制实心部分的画笔，着色模式下带有实心颜色
+    private Paint hollowPaint = paint;//绘制空心部分的画笔，着色模式下带有空心颜色
+    private final Matrix shaderMatrix = new Matrix();//平铺绘制时将图片对齐到第一颗星星
+    private Path starPath;//矢量绘制时当前尺寸的星形轮廓，几何模型变化时重新获取
+
+    //实心图片
+    private Bitmap mSolidBitmap;
+    //空心图片
+    private Bitmap mHollowBitmap;
+    private int renderer = RENDERER_BITMAP;//绘制方式
+    private int resourceSolid = R.mipmap.ic_star_yellow_selected;
+    private int resourceHollow = R.mipmap.ic_star_yellow_normal;
+    private boolean hasColors;//是否设置了实心和空心颜色
+    private int solidColor;
+    private int hollowColor;
+    private int starPoints = StarPath.DEFAULT_POINTS;//矢量绘制时星星角的数量
+    private int mStarWidth;//星星宽度，为0时使用图片本身的宽度
+    private int mStarHeight;//星星高度，为0时使用图片本身的高度
+    private int mSpaceWidth;//星星间隔
+    private int starMaxNumber;//最大数量
+    private float starRating;//当前进度
+    private int alpha = 255;
+    private ColorFilter colorFilter;
+
+    private boolean rendererDirty = true;//图片和画笔需要重新创建
+    private boolean geometryDirty = true;//几何模型需要重新计算
+
+    private boolean stripCacheEnabled;//是否使用进度条缓存
+    private String stripKey;//当前配置在进度条缓存中的键，配置变化时重新生成
+    private Bitmap strip;//当前进度对应的缓存图片
+    private Bitmap solidTile;//平铺绘制时实心部分的平铺图片
+    private Bitmap hollowTile;//平铺绘制时空心部分的平铺图片
+    private float stripRating;//缓存图片对应的进度
+
+    public StarRatingDrawable(Resources resources) {
+        this.resources = resources;
+    }
+
+    /**
+     * 设置绘制方式
+     *
+     * @param renderer {@link #RENDERER_BITMAP}、{@link #RENDERER_VECTOR} 或 {@link #RENDERER_TILED}
+     */
+    public void setRenderer(int renderer) {
+        if (this.renderer != renderer) {
+            this.renderer = renderer;
+            invalidateRenderer();
+        }
+    }
+
+    public int getRenderer() {
+        return renderer;
+    }
+
+    /**
+     * 设置实心和空心图片，两者相同并且设置了颜色时使用着色模式，只保留一张遮罩图片
+     */
+    public void setStarResources(int resourceSolid, int resourceHollow) {
+        if (this.resourceSolid != resourceSolid || this.resourceHollow != resourceHollow) {
+            this.resourceSolid = resourceSolid;
+            this.resourceHollow = resourceHollow;
+            invalidateRenderer();
+        }
+    }
+
+    /**
+     * 设置实心和空心颜色，用于着色模式和矢量绘制
+     */
+    public void setColors(int solidColor, int hollowColor) {
+        if (!hasColors || this.solidColor != solidColor || this.hollowColor != hollowColor) {
+            hasColors = true;
+            this.solidColor = solidColor;
+            this.hollowColor = hollowColor;
+            invalidateRenderer();
+        }
+    }
+
+    /**
+     * 设置星星的宽高，为0时使用图片本身的宽高，矢量绘制时使用默认尺寸
+     */
+    public void setStarSize(int starWidth, int starHeight) {
+        if (mStarWidth != starWidth || mStarHeight != starHeight) {
+            mStarWidth = starWidth;
+            mStarHeight = starHeight;
+            invalidateRenderer();
+        }
+    }
+
+    public void setSpaceWidth(int spaceWidth) {
+        if (mSpaceWidth != spaceWidth) {
+            mSpaceWidth = spaceWidth;
+            invalidateGeometry();
+        }
+    }
+
+    /**
+     * 设置矢量绘制时星星角的数量
+     */
+    public void setStarPoints(int starPoints) {
+        if (this.starPoints != starPoints) {
+            this.starPoints = starPoints;
+            invalidateGeometry();
+        }
+    }
+
+    /**
+     * 设置最大数量，以半颗星星为单位
+     */
+    public void setStarMaxNumber(int starMaxNumber) {
+        if (this.starMaxNumber != starMaxNumber) {
+            this.starMaxNumber = starMaxNumber;
+            invalidateGeometry();
+        }
+    }
+
+    public int getStarMaxNumber() {
+        return starMaxNumber;
+    }
+
+    /**
+     * 设置进度，以半颗星星为单位
+     */
+    public void setStarRating(float starRating) {
+        if (this.starRating != starRating) {
+            this.starRating = starRating;
+            if (!geometryDirty) {
+                geometry.setRating(starRating);
+            }
+            invalidateSelf();
+        }
+    }
+
+    public float getStarRating() {
+        return starRating;
+    }
+
+    /**
+     * 设置是否使用进度条缓存，开启后每种进度只绘制一次，之后直接绘制缓存的图片，
+     * 适合只用于展示、大量重复出现的进度。设置了透明度或 ColorFilter 时不使用缓存
+     */
+    public void setStripCacheEnabled(boolean enabled) {
+        if (stripCacheEnabled != enabled) {
+            stripCacheEnabled = enabled;
+            strip = null;
+            invalidateSelf();
+        }
+    }
+
+    public boolean isStripCacheEnabled() {
+        return stripCacheEnabled;
+    }
+
+    /**
+     * 释放对图片的引用，共享缓存在内存紧张时才能真正回收这些图片，下一次绘制时会重新从缓存中获取。
+     * StarView 的 Drawable 在内存紧张时由 {@link StarMemoryStats} 统一释放，单独使用时可以在不再显示时调用
+     */
+    public void release() {
+        if (mSolidBitmap == null && mHollowBitmap == null && strip == null) {
+            return;
+        }
+        mSolidBitmap = null;
+        mHollowBitmap = null;
+        strip = null;
+        solidTile = null;
+        hollowTile = null;
+        //平铺图片被 Shader 引用
+        solidPaint.setShader(null);
+        hollowPaint.setShader(null);
+        rendererDirty = true;
+        geometryDirty = true;
+    }
+
+    /**
+     * 当前持有的图片占用的字节数，包括星星图片、平铺图片和进度条缓存图片，同一张图片只计一次
+     */
+    public int getBitmapByteCount() {
+        int bytes = byteCount(mSolidBitmap) + byteCount(strip) + byteCount(solidTile);
+        if (mHollowBitmap != mSolidBitmap) {
+            bytes += byteCount(mHollowBitmap);
+        }
+        if (hollowTile != solidTile) {
+            bytes += byteCount(hollowTile);
+        }
+        return bytes;
+    }
+
+    private static int byteCount(Bitmap bitmap) {
+        return bitmap != null ? bitmap.getByteCount() : 0;
+    }
+
+    /**
+     * 最新的几何模型，{@link StarView} 通过它计算触摸位置和局部刷新区域
+     */
+    StarGeometry getGeometry() {
+        ensureGeometry();
+        return geometry;
+    }
+
+    private void invalidateRenderer() {
+        rendererDirty = true;
+        invalidateGeometry();
+    }
+
+    private void invalidateGeometry() {
+        geometryDirty = true;
+        invalidateSelf();
+    }
+
+    /**
+     * 根据绘制方式准备图片和画笔，设置没有变化时不会重新创建
+     */
+    private void ensureRenderer() {
+        if (!rendererDirty) {
+            return;
+        }
+        rendererDirty = false;
+        mSolidBitmap = null;
+        mHollowBitmap = null;
+        if (renderer == RENDERER_VECTOR) {
+            //矢量绘制不需要解码图片
+            solidPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            hollowPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            solidPaint.setColor(hasColors ? solidColor : ResourcesCompat.getColor(resources, R.color.star_solid_default, null));
+            hollowPaint.setColor(hasColors ? hollowColor : ResourcesCompat.getColor(resources, R.color.star_hollow_default, null));
+        } else if (isTinted()) {
+            //着色模式：只保留一张 ALPHA_8 的遮罩图片，实心和空心部分通过画笔颜色区分
+            mSolidBitmap = StarBitmapCache.getMask(resources, resourceSolid, mStarWidth, mStarHeight);
+            mHollowBitmap = mSolidBitmap;
+            solidPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            solidPaint.setColor(solidColor);
+            hollowPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            hollowPaint.setColor(hollowColor);
+        } else {
+            //从共享缓存中获取缩放好的图片，相同资源和尺寸的图片只会解码一次
+            mSolidBitmap = StarBitmapCache.get(resources, resourceSolid, mStarWidth, mStarHeight);
+            mHollowBitmap = StarBitmapCache.get(resources, resourceHollow, mStarWidth, mStarHeight);
+            if (renderer == RENDERER_TILED) {
+                //平铺绘制时实心和空心部分各自持有一个 Shader，不能共用画笔
+                solidPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+                hollowPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+            } else {
+                solidPaint = paint;
+                hollowPaint = paint;
+            }
+        }
+        applyAlpha(solidPaint, solidPaint == paint ? Color.BLACK : solidPaint.getColor());
+        applyAlpha(hollowPaint, hollowPaint == paint ? Color.BLACK : hollowPaint.getColor());
+    }
+
+    private boolean isTinted() {
+        return hasColors && resourceHollow == resourceSolid;
+    }
+
+    /**
+     * 画笔的透明度为颜色本身的透明度与 Drawable 透明度的乘积
+     */
+    private void applyAlpha(Paint target, int color) {
+        target.setColor(color);
+        target.setAlpha(Color.alpha(color) * alpha / 255);
+        target.setColorFilter(colorFilter);
+    }
+
+    /**
+     * 根据当前的尺寸、数量和进度更新几何模型，参数没有变化时不会重新计算
+     */
+    private void ensureGeometry() {
+        if (!geometryDirty) {
+            return;
+        }
+        geometryDirty = false;
+        //尺寸或绘制方式可能变化，进度条缓存的键需要重新生成
+        stripKey = null;
+        strip = null;
+        starPath = null;
+        ensureRenderer();
+        int starWidth = mStarWidth;
+        int starHeight = mStarHeight;
+        int solidWidth, solidHeight, hollowWidth, hollowHeight;
+        if (renderer == RENDERER_VECTOR) {
+            //只设置了宽高其中之一时按正方形处理
+            if (starWidth == 0 && starHeight == 0) {
+                starWidth = starHeight = resources.getDimensionPixelSize(R.dimen.star_default_size);
+            } else if (starWidth == 0) {
+                starWidth = starHeight;
+            } else if (starHeight == 0) {
+                starHeight = starWidth;
+            }
+            solidWidth = hollowWidth = starWidth;
+            solidHeight = hollowHeight = starHeight;
+        } else {
+            if (mHollowBitmap == null || mSolidBitmap == null) {
+                return;
+            }
+            //未设置星星宽高时，使用图片本身的宽高
+            if (starWidth == 0) {
+                starWidth = mSolidBitmap.getWidth();
+            }
+            if (starHeight == 0) {
+                starHeight = mSolidBitmap.getHeight();
+            }
+            solidWidth = mSolidBitmap.getWidth();
+            solidHeight = mSolidBitmap.getHeight();
+            hollowWidth = mHollowBitmap.getWidth();
+            hollowHeight = mHollowBitmap.getHeight();
+        }
+        Rect bounds = getBounds();
+        boolean changed = geometry.setup(starMaxNumber, starWidth, starHeight, mSpaceWidth, bounds.left, bounds.top,
+                solidWidth, solidHeight, hollowWidth, hollowHeight);
+        geometry.setRating(starRating);
+        if (renderer == RENDERER_TILED && (changed || solidPaint.getShader() == null)) {
+            updateShaders();
+        }
+    }
+
+    /**
+     * 平铺绘制：按当前的星星尺寸和间隔获取平铺图片，并从第一颗星星的位置开始横向重复
+     */
+    private void updateShaders() {
+        boolean tinted = isTinted();
+        int starWidth = geometry.getStarWidth();
+        int starHeight = geometry.getStarHeight();
+        int spaceWidth = geometry.getSpaceWidth();
+        solidTile = StarBitmapCache.getTile(resources, resourceSolid, starWidth, starHeight, spaceWidth, tinted);
+        hollowTile = tinted ? solidTile
+                : StarBitmapCache.getTile(resources, resourceHollow, starWidth, starHeight, spaceWidth, false);
+        if (solidTile == null || hollowTile == null) {
+            solidPaint.setShader(null);
+            hollowPaint.setShader(null);
+            return;
+        }
+        shaderMatrix.setTranslate(geometry.getLeft(), geometry.getTop());
+        BitmapShader solidShader = new BitmapShader(solidTile, Shader.TileMode.REPEAT, Shader.TileMode.CLAMP);
+        solidShader.setLocalMatrix(shaderMatrix);
+        solidPaint.setShader(solidShader);
+        if (hollowTile == solidTile) {
+            hollowPaint.setShader(solidShader);
+        } else {
+            BitmapShader hollowShader = new BitmapShader(hollowTile, Shader.TileMode.REPEAT, Shader.TileMode.CLAMP);
+            hollowShader.setLocalMatrix(shaderMatrix);
+            hollowPaint.setShader(hollowShader);
+        }
+    }
+
+    @Override
+    protected void onBoundsChange(Rect bounds) {
+        super.onBoundsChange(bounds);
+        geometryDirty = true;
+    }
+
+    @Override
+    public int getIntrinsicWidth() {
+        ensureGeometry();
+        return geometry.getContentWidth();
+    }
+
+    @Override
+    public int getIntrinsicHeight() {
+        ensureGeometry();
+        return geometry.getContentHeight();
+    }
+
+    @Override
+    public void draw(Canvas canvas) {
+        ensureGeometry();
+        if (stripCacheEnabled && alpha == 255 && colorFilter == null) {
+            Bitmap strip = getStrip();
+            if (strip != null) {
+                canvas.drawBitmap(strip, geometry.getLeft(), geometry.getTop(), null);
+                return;
+            }
+        }
+        drawDirect(canvas);
+    }
+
+    /**
+     * 获取当前进度对应的缓存图片，缓存中没有时绘制一次并放入缓存，进度和配置没有变化时直接返回上一次的结果
+     */
+    private Bitmap getStrip() {
+        if (strip != null && stripRating == starRating) {
+            return strip;
+        }
+        int width = geometry.getContentWidth();
+        int height = geometry.getContentHeight();
+        if (width <= 0 || height <= 0) {
+            return null;
+        }
+        if (stripKey == null) {
+            stripKey = renderer + ":" + resourceSolid + ":" + resourceHollow
+                    + ":" + (hasColors ? solidColor + "/" + hollowColor : "-")
+                    + ":" + width + "x" + height + ":" + geometry.getStarWidth() + "+" + geometry.getSpaceWidth()
+                    + ":" + starPoints + ":" + geometry.getHalfCount();
+        }
+        String key = stripKey + "@" + starRating;
+        Bitmap cached = StarStripCache.get(key);
+        if (cached == null) {
+            cached = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            Canvas stripCanvas = new Canvas(cached);
+            stripCanvas.translate(-geometry.getLeft(), -geometry.getTop());
+            drawDirect(stripCanvas);
+            StarStripCache.put(key, cached);
+        }
+        strip = cached;
+        stripRating = starRating;
+        return cached;
+    }
+
+    /**
+     * 按当前的绘制方式直接绘制星星
+     */
+    private void drawDirect(Canvas canvas) {
+        switch (renderer) {
+            case RENDERER_VECTOR:
+                drawVector(canvas);
+                break;
+            case RENDERER_TILED:
+                drawTiled(canvas);
+                break;
+            default:
+                drawBitmaps(canvas);
+                break;
+        }
+    }
+
+    private void drawBitmaps(Canvas canvas) {
+        if (mHollowBitmap == null || mSolidBitmap == null) {
+            return;
+        }
+        StarGeometry geometry = this.geometry;
+        Rect[] halfDst = geometry.halfDst;
+        //绘制实心进度
+        int solidStarNum = geometry.getSolidHalfCount();
+        for (int i = 0; i < solidStarNum; i++) {
+            canvas.drawBitmap(mSolidBitmap, geometry.getSolidSrc(i), halfDst[i], solidPaint);
+        }
+        //绘制空心部分
+        for (int i = solidStarNum, count = geometry.getHalfCount(); i < count; i++) {
+            canvas.drawBitmap(mHollowBitmap, geometry.getHollowSrc(i), halfDst[i], hollowPaint);
+        }
+        //多出的实心部分
+        if (geometry.hasPartial()) {
+            canvas.drawBitmap(mSolidBitmap, geometry.partialSrc, geometry.partialDst, solidPaint);
+        }
+    }
+
+    /**
+     * 矢量绘制：实心部分右边界的左右两侧分别裁剪，用同一个星形 Path 以不同颜色填充，
+     * 多出的实心部分由裁剪区域自然处理
+     */
+    private void drawVector(Canvas canvas) {
+        StarGeometry geometry = this.geometry;
+        int starCount = (geometry.getHalfCount() + 1) / 2;
+        if (starCount == 0) {
+            return;
+        }
+        //缓存的键是字符串，每一帧都查找会分配内存，因此只在几何模型变化后查找一次
+        Path path = starPath;
+        if (path == null) {
+            path = starPath = StarPath.get(geometry.getStarWidth(), geometry.getStarHeight(), starPoints);
+        }
+        int left = geometry.getLeft();
+        int top = geometry.getTop();
+        int right = left + geometry.getContentWidth();
+        int bottom = top + geometry.getContentHeight();
+        int solidRight = geometry.getSolidRight();
+        int step = geometry.getStarWidth() + geometry.getSpaceWidth();
+        //实心部分只需要绘制到包含右边界的那颗星星，空心部分从这颗星星开始绘制
+        int boundary = step > 0 ? Math.min(starCount - 1, (solidRight - left) / step) : 0;
+        if (solidRight > left) {
+            drawStars(canvas, path, solidPaint, left, top, solidRight, bottom, 0, boundary, step);
+        }
+        if (solidRight < right) {
+            drawStars(canvas, path, hollowPaint, solidRight, top, right, bottom, boundary, starCount - 1, step);
+        }
+    }
+
+    private void drawStars(Canvas canvas, Path path, Paint paint, int clipLeft, int clipTop, int clipRight,
+                           int clipBottom, int first, int last, int step) {
+        int saveCount = canvas.save();
+        canvas.clipRect(clipLeft, clipTop, clipRight, clipBottom);
+        canvas.translate(geometry.getLeft() + first * step, geometry.getTop());
+        for (int i = first; i <= last; i++) {
+            canvas.drawPath(path, paint);
+            canvas.translate(step, 0);
+        }
+        canvas.restoreToCount(saveCount);
+    }
+
+    /**
+     * 平铺绘制：实心部分和空心部分各是一个矩形，间隔已包含在平铺图片中，多出的实心部分就是两个矩形的分界
+     */
+    private void drawTiled(Canvas canvas) {
+        if (solidPaint.getShader() == null || hollowPaint.getShader() == null) {
+            return;
+        }
+        StarGeometry geometry = this.geometry;
+        int left = geometry.getLeft();
+        int top = geometry.getTop();
+        int right = left + geometry.getContentWidth();
+        int bottom = top + geometry.getContentHeight();
+        int solidRight = geometry.getSolidRight();
+        if (solidRight > left) {
+            canvas.drawRect(left, top, solidRight, bottom, solidPaint);
+        }
+        if (solidRight < right) {
+            canvas.drawRect(solidRight, top, right, bottom, hollowPaint);
+        }
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        if (this.alpha != alpha) {
+            this.alpha = alpha;
+            rendererDirty = true;
+            invalidateGeometry();
+        }
+    }
+
+    @Override
+    public int getAlpha() {
+        return alpha;
+    }
+
+    @Override
+    public void setColorFilter(@Nullable ColorFilter colorFilter) {
+        this.colorFilter = colorFilter;
+        rendererDirty = true;
+        invalidateGeometry();
+    }
+
+    @Override
+    public int getOpacity() {
+        return PixelFormat.TRANSLUCENT;
+    }
+}
@@ -0,0 +1,48 @@
+package com.clibrary;
+
+import android.graphics.Bitmap;
+
+/**
+ * 进程内共享的星星进度条缓存
+ * 只用于展示的星星进度，不同的显示结果只有 "最大数量 × 进度" 种，每种结果绘制一次后保存为一张图片，
+ * 配置相同的所有 {@link StarRatingDrawable} 共用，之后每次绘制只需要一次 drawBitmap。
+ * 进度条由 {@link StarBitmapCache} 中的星星图片合成，被淘汰后只需重新绘制一次，不需要解码，
+ * 因此上限只有图片缓存的一半，即应用最大可用内存的 1/128，内存不足时优先牺牲这里。
+ */
+public final class StarStripCache {
+
+    private static final BitmapLruCache sCache = new BitmapLruCache(128);
+
+    private StarStripCache() {
+    }
+
+    static Bitmap get(String key) {
+        return sCache.get(key);
+    }
+
+    static void put(String key, Bitmap strip) {
+        sCache.put(key, strip);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public static void clear() {
+        sCache.evictAll();
+    }
+
+    /**
+     * 缩小缓存到指定的字节数以内
+     */
+    static void trimToSize(int maxSize) {
+        sCache.trimToSize(maxSize);
+    }
+
+    static int size() {
+        return sCache.size();
+    }
+
+    static int maxSize() {
+        return sCache.maxSize();
+    }
+}
@@ -1,58 +1,84 @@
 package com.clibrary;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.content.res.TypedArray;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
-import android.graphics.Matrix;
-import android.graphics.Paint;
-import android.graphics.Rect;
 import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.support.v4.os.TraceCompat;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewGroup;
+import android.view.ViewParent;
 
 
 /**
  * 自定义的五角星view
  * 可设置显示数量，以及实心VIew与空心View的显示设置
+ * 绘制委托给 {@link StarRatingDrawable}，只用于展示的场景可以直接使用该 Drawable
  */
 public class StarView extends View {
 
-    //实心图片
-    private Bitmap mSolidBitmap;
-    //空心图片
-    private Bitmap mHollowBitmap;
+    //使用图片绘制
+    public static final int RENDERER_BITMAP = StarRatingDrawable.RENDERER_BITMAP;
+    //使用矢量轮廓绘制
+    public static final int RENDERER_VECTOR = StarRatingDrawable.RENDERER_VECTOR;
+    //使用平铺的图片绘制，实心和空心部分各一次绘制调用
+    public static final int RENDERER_TILED = StarRatingDrawable.RENDERER_TILED;
+
+    //触摸时以半颗星星为步长
+    public static final int STEP_HALF = 0;
+    //触摸时以整颗星星为步长
+    public static final int STEP_WHOLE = 1;
+    //触摸时进度连续变化
+    public static final int STEP_CONTINUOUS = 2;
+
+    //性能指标的回调，所有 StarView 共用，为 null 时不做任何统计
+    private static StarMetrics sMetrics;
+
     //最大的数量
     private int starMaxNumber;
     //实心最小数量
     private int starMinNumber;
     private float starRating;
-    private Paint paint;
-    private int mSpaceWidth;//星星间隔
-    private int mStarWidth;//星星宽度
-    private int mStarHeight;//星星高度
     private boolean isIndicator;//是否是一个指示器（默认false，不可设置实心与空心图标的显示）
+    private boolean stripCache;//作为指示器时是否缓存每种进度的绘制结果
     private Context context;
     private int resourceSolid=0,resourceHollow=0;
+    private final StarRatingDrawable drawable;//星星的绘制
+    private int starStep;//触摸改变进度时的步长
+    private OnRatingChangeListener mRatingChangeListener;
+    private boolean isPressedDown;//是否在星星上按下，还没有抬起或取消
+    private boolean isDragging;//是否正在拖动改变进度
+    private float touchDownX;//按下时的横坐标，在可滚动的父控件中用于判断是否开始拖动
+    private final int touchSlop;//在可滚动的父控件中，横向移动超过这个距离才开始拖动
+    private float dragStartRating;//开始拖动时的进度，取消时恢复
+    private float pendingRating;//等待下一帧应用的进度
+    private boolean ratingPosted;//是否已经投递了下一帧的更新
     public StarView(Context context, @Nullable AttributeSet attrs) {
         this(context, attrs, 0);
     }
 
     public StarView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
         super(context, attrs, defStyleAttr);
-        paint = new Paint();
+        StarMemoryStats.register(context);
+        drawable = new StarRatingDrawable(context.getResources());
+        StarMemoryStats.track(drawable);
         TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.StarView, defStyleAttr, 0);
-        mSpaceWidth = a.getDimensionPixelSize(R.styleable.StarView_space_width, 0);
-        mStarWidth = a.getDimensionPixelSize(R.styleable.StarView_star_width, 0);
-        mStarHeight = a.getDimensionPixelSize(R.styleable.StarView_star_height, 0);
+        drawable.setSpaceWidth(a.getDimensionPixelSize(R.styleable.StarView_space_width, 0));
+        drawable.setStarSize(a.getDimensionPixelSize(R.styleable.StarView_star_width, 0),
+                a.getDimensionPixelSize(R.styleable.StarView_star_height, 0));
 
         //由于作图时，是按照图标的一半进行绘制，以下三个参数的数量需乘以2
         starMaxNumber = a.getInt(R.styleable.StarView_star_max, 0) * 2;
         starMinNumber = a.getInt(R.styleable.StarView_star_min, 0) * 2;
         starRating = a.getFloat(R.styleable.StarView_star_rating, 0) * 2;
+        drawable.setStarMaxNumber(starMaxNumber);
+        drawable.setStarRating(starRating);
         //判断选中图标的配置是否为空
         if(0==a.getResourceId(R.styleable.StarView_star_solid, 0)){
             resourceSolid=R.mipmap.ic_star_yellow_selected;
@@ -65,134 +91,223 @@ public class StarView extends View {
         }else{
             resourceHollow=a.getResourceId(R.styleable.StarView_star_hollow, 0);
         }
-        Log.i("solid",resourceSolid+"");
-        Log.i("hollow",resourceHollow+"");
-        mSolidBitmap = getZoomBitmap(BitmapFactory.decodeResource(context.getResources(), resourceSolid));
-        mHollowBitmap = getZoomBitmap(BitmapFactory.decodeResource(context.getResources(), resourceHollow));
+        int renderer = a.getInt(R.styleable.StarView_star_renderer, RENDERER_BITMAP);
+        drawable.setRenderer(renderer);
+        drawable.setStarPoints(a.getInt(R.styleable.StarView_star_points, StarPath.DEFAULT_POINTS));
+        if (renderer == RENDERER_VECTOR) {
+            //矢量绘制的颜色，未设置时使用默认颜色
+            drawable.setColors(a.getColor(R.styleable.StarView_star_solid_color,
+                    ContextCompat.getColor(context, R.color.star_solid_default)),
+                    a.getColor(R.styleable.StarView_star_hollow_color,
+                            ContextCompat.getColor(context, R.color.star_hollow_default)));
+        } else if (isTinted(a)) {
+            //设置了实心和空心颜色，并且没有单独设置不同的空心图片时，使用着色模式：
+            //只保留一张 ALPHA_8 的遮罩图片，实心和空心部分通过画笔颜色区分
+            drawable.setStarResources(resourceSolid, resourceSolid);
+            drawable.setColors(a.getColor(R.styleable.StarView_star_solid_color, 0),
+                    a.getColor(R.styleable.StarView_star_hollow_color, 0));
+        } else {
+            drawable.setStarResources(resourceSolid, resourceHollow);
+        }
         isIndicator = a.getBoolean(R.styleable.StarView_star_isIndicator, false);
+        stripCache = a.getBoolean(R.styleable.StarView_star_strip_cache, false);
+        drawable.setStripCacheEnabled(isIndicator && stripCache);
+        starStep = a.getInt(R.styleable.StarView_star_step, STEP_HALF);
         a.recycle();
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+    }
+
+    private boolean isTinted(TypedArray a) {
+        return a.hasValue(R.styleable.StarView_star_solid_color)
+                && a.hasValue(R.styleable.StarView_star_hollow_color)
+                && (!a.hasValue(R.styleable.StarView_star_hollow) || resourceHollow == resourceSolid);
+    }
+
+    @Override
+    protected void onLayout(boolean changed, int left, int top, int right, int bottom) {
+        super.onLayout(changed, left, top, right, bottom);
+        //星星从内边距的左上角开始绘制
+        drawable.setBounds(getPaddingLeft(), getPaddingTop(),
+                getWidth() - getPaddingRight(), getHeight() - getPaddingBottom());
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        TraceCompat.beginSection("StarView.onDraw");
+        StarMetrics metrics = sMetrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        drawable.draw(canvas);
+        if (metrics != null) {
+            metrics.onDraw(this, System.nanoTime() - start, drawable.getBitmapByteCount());
+        }
+        TraceCompat.endSection();
+    }
+
+    /**
+     * 设置所有 StarView 共用的性能指标回调，传入 null 时关闭统计，需要在主线程中调用
+     */
+    public static void setMetrics(StarMetrics metrics) {
+        sMetrics = metrics;
     }
 
     /**
-     * 获取缩放的图片
-     * @param bitmap
-     * @return
+     * 提前解码默认的星星图片并放入 {@link StarBitmapCache}，可以在任意线程中调用，例如在 Application.onCreate 中交给后台线程执行
+     * 尺寸需要与布局中的 star_width、star_height 一致，单位为像素，为 0 时使用图片本身的尺寸
      */
-    private Bitmap getZoomBitmap(Bitmap bitmap) {
-        if (mStarWidth == 0 || mStarHeight == 0) {
-            return bitmap;
+    public static void preload(Context context, int starWidth, int starHeight) {
+        preload(context, R.mipmap.ic_star_yellow_selected, R.mipmap.ic_star_yellow_normal, starWidth, starHeight);
+    }
+
+    /**
+     * 提前解码指定的星星图片并放入 {@link StarBitmapCache}，之后创建和第一次绘制 StarView 时不会再解码图片
+     * 只适用于图片绘制和平铺绘制，着色模式使用的遮罩图片在第一次绘制时生成
+     */
+    public static void preload(Context context, int solidRes, int hollowRes, int starWidth, int starHeight) {
+        TraceCompat.beginSection("StarView.preload");
+        StarMemoryStats.register(context);
+        Resources resources = context.getResources();
+        StarBitmapCache.get(resources, solidRes, starWidth, starHeight);
+        if (hollowRes != solidRes) {
+            StarBitmapCache.get(resources, hollowRes, starWidth, starHeight);
         }
-        // 获得图片的宽高
-        int width = bitmap.getWidth();
-        int height = bitmap.getHeight();
-
-        // 设置想要的大小
-        int newWidth = mStarWidth;
-        int newHeight = mStarHeight;
-        // 计算缩放比例
-        float scaleWidth = ((float) newWidth) / width;
-        float scaleHeight = ((float) newHeight) / height;
-        // 取得想要缩放的matrix参数
-        Matrix matrix = new Matrix();
-        matrix.postScale(scaleWidth, scaleHeight);
-        // 得到新的图片
-        Bitmap newbm = Bitmap.createBitmap(bitmap, 0, 0, width, height, matrix, true);
-        return newbm;
+        TraceCompat.endSection();
     }
+
     @Override
-    protected void onDraw(Canvas canvas) {
-        if (mHollowBitmap == null || mSolidBitmap == null) {
-            return;
+    public boolean onTouchEvent(MotionEvent event) {
+        if (isIndicator || !isEnabled()) {
+            return super.onTouchEvent(event);
+        }
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                //根据几何模型计算触摸点对应的进度，最小值以下或超出最后一颗星星时不改变
+                if (drawable.getGeometry().getRatingAt(event.getX(), starMinNumber, starStep, false) < 0) {
+                    return super.onTouchEvent(event);
+                }
+                isPressedDown = true;
+                touchDownX = event.getX();
+                dragStartRating = starRating;
+                //在 ListView、RecyclerView 等可滚动的父控件中，先让父控件判断是否是纵向滚动，横向移动超过 touchSlop 才开始拖动
+                if (!isInScrollingContainer()) {
+                    startDrag(event.getX());
+                }
+                return true;
+            case MotionEvent.ACTION_MOVE:
+                if (isDragging) {
+                    //拖出星星范围时取最近的有效进度
+                    postRating(drawable.getGeometry().getRatingAt(event.getX(), starMinNumber, starStep, true));
+                    return true;
+                }
+                if (isPressedDown) {
+                    if (Math.abs(event.getX() - touchDownX) > touchSlop) {
+                        startDrag(event.getX());
+                    }
+                    return true;
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                if (isPressedDown) {
+                    //没有拖动时视为点击，进度设置为抬起的位置
+                    boolean tap = !isDragging;
+                    isPressedDown = false;
+                    isDragging = false;
+                    postRating(drawable.getGeometry().getRatingAt(event.getX(), starMinNumber, starStep, true));
+                    applyPendingRating();
+                    if (starRating != dragStartRating && mRatingChangeListener != null) {
+                        mRatingChangeListener.onRatingCommitted(this, starRating);
+                    }
+                    if (tap) {
+                        performClick();
+                    }
+                    return true;
+                }
+                break;
+            case MotionEvent.ACTION_CANCEL:
+                if (isPressedDown) {
+                    //手势被取消时恢复到开始拖动时的进度
+                    isPressedDown = false;
+                    if (isDragging) {
+                        isDragging = false;
+                        postRating(dragStartRating);
+                        applyPendingRating();
+                    }
+                    return true;
+                }
+                break;
         }
+        return super.onTouchEvent(event);
+    }
 
-        //绘制实心进度
-        int solidStarNum = (int) starRating;
-        //绘制实心的起点位置
-        int solidStartPoint = 0;
-
-        //设置实心图标显示一半
-        // 指定图片绘制区域(左半边)
-        Rect srcleft = new Rect(0, 0, mSolidBitmap.getWidth() / 2, mSolidBitmap.getHeight());
-        // 指定图片绘制区域(右半边)
-        Rect srcright = new Rect(mSolidBitmap.getWidth() / 2, 0, mSolidBitmap.getWidth(), mSolidBitmap.getHeight());
-
-        int iconLeft=0;
-        for (int i = 1; i <= solidStarNum; i++) {
-
-            // 指定图片在屏幕上显示的区域
-            Rect dst = new Rect(iconLeft, 0, iconLeft+mSolidBitmap.getWidth()/2, mSolidBitmap.getHeight());
-            // 绘制图片
-            if(i%2==1) {
-                canvas.drawBitmap(mSolidBitmap, srcleft, dst, null);
-                iconLeft+=mSolidBitmap.getWidth()/2;
-            }else{
-                canvas.drawBitmap(mSolidBitmap, srcright, dst, null);
-                iconLeft +=mSolidBitmap.getWidth()/2+mSpaceWidth;
-            }
-            solidStartPoint=iconLeft;
+    /**
+     * 开始拖动，之后不让父控件拦截触摸事件
+     */
+    private void startDrag(float x) {
+        isDragging = true;
+        if (getParent() != null) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        postRating(drawable.getGeometry().getRatingAt(x, starMinNumber, starStep, true));
+    }
 
+    /**
+     * 是否在会延迟子View按下状态的可滚动父控件中，与 AbsSeekBar 的判断方式相同
+     */
+    private boolean isInScrollingContainer() {
+        ViewParent parent = getParent();
+        while (parent instanceof ViewGroup) {
+            if (((ViewGroup) parent).shouldDelayChildPressedState()) {
+                return true;
+            }
+            parent = parent.getParent();
         }
-        //虚心开始位置
-        int hollowStartPoint = solidStartPoint;
-        //多出的实心部分起点
-        int extraSolidStarPoint = hollowStartPoint;
-        //虚心数量
-        int hollowStarNum =starMaxNumber - solidStarNum;
-        for (int j = 1; j <= hollowStarNum; j++) {
-
-            // 指定图片在屏幕上显示的区域
-            Rect dst = new Rect(hollowStartPoint, 0, hollowStartPoint + mHollowBitmap.getWidth() / 2, mHollowBitmap.getHeight());
-            // 绘制图片
-            //根据取余运算，判断绘制空心图的哪一部分
-            if(hollowStarNum%2==0) {
-                if (j % 2 == 1) {
-                    canvas.drawBitmap(mHollowBitmap, srcleft, dst, null);
-                    hollowStartPoint += mHollowBitmap.getWidth() / 2;
-                } else {
-                    canvas.drawBitmap(mHollowBitmap, srcright, dst, null);
-                    hollowStartPoint += mHollowBitmap.getWidth() / 2 + mSpaceWidth;
-                }
-            }else{
-                if (j % 2 == 1) {
-                    canvas.drawBitmap(mHollowBitmap, srcright, dst, null);
-                    hollowStartPoint += mHollowBitmap.getWidth() / 2 + mSpaceWidth;
+        return false;
+    }
 
-                } else {
+    /**
+     * 记录新的进度并在下一帧统一应用，同一帧内的多个触摸事件只刷新一次
+     */
+    private void postRating(float rating) {
+        pendingRating = rating;
+        if (!ratingPosted) {
+            ratingPosted = true;
+            ViewCompat.postOnAnimation(this, applyRatingRunnable);
+        }
+    }
 
-                    canvas.drawBitmap(mHollowBitmap, srcleft, dst, null);
-                    hollowStartPoint += mHollowBitmap.getWidth() / 2;
-                }
+    /**
+     * 立即应用等待中的进度，进度发生变化时回调拖动监听
+     */
+    private void applyPendingRating() {
+        if (ratingPosted) {
+            ratingPosted = false;
+            removeCallbacks(applyRatingRunnable);
+        }
+        if (pendingRating != starRating) {
+            setStarRating(pendingRating);
+            if (mRatingChangeListener != null) {
+                mRatingChangeListener.onRatingChanging(this, starRating);
             }
         }
-        //多出的实心长度
-        int extraSolidLength = (int) ((starRating - solidStarNum) * mHollowBitmap.getWidth());
-        Rect rectSrc = new Rect(0, 0, extraSolidLength, mHollowBitmap.getHeight());
-        Rect dstF = new Rect(extraSolidStarPoint, 0, extraSolidStarPoint + extraSolidLength, mHollowBitmap.getHeight());
-        canvas.drawBitmap(mSolidBitmap, rectSrc, dstF, paint);
     }
 
+    private final Runnable applyRatingRunnable = new Runnable() {
+        @Override
+        public void run() {
+            ratingPosted = false;
+            applyPendingRating();
+        }
+    };
+
     @Override
-    public boolean onTouchEvent(MotionEvent event) {
-        if (!isIndicator) {
-            switch (event.getAction()) {
-                case MotionEvent.ACTION_DOWN:
-                    //设置图标可显示的宽度，为图标加上空格的总长度
-                    float TotalWidth = starMaxNumber *( mStarWidth+mSpaceWidth)/2;
-                    //设置最显示小值以上时，可图标渐变
-                    if (event.getX()>((starMinNumber-1)*(mStarWidth+mSpaceWidth)/2)&&event.getX() <= TotalWidth) {
-                        float newStarRating = (int) event.getX() / ((mStarWidth+mSpaceWidth)/2 ) +1;
-                        setStarRating(newStarRating);
-                    }
-                    break;
-                case MotionEvent.ACTION_MOVE:
-                    break;
-                case MotionEvent.ACTION_UP:
-                    break;
-                case MotionEvent.ACTION_CANCEL:
-                    break;
-            }
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (ratingPosted) {
+            ratingPosted = false;
+            removeCallbacks(applyRatingRunnable);
         }
-        return super.onTouchEvent(event);
+        isPressedDown = false;
+        isDragging = false;
+        //列表中的Item会频繁离开和重新进入窗口，这里不释放图片，内存紧张时由 StarMemoryStats 统一释放
     }
 
     /**
@@ -201,8 +316,26 @@ public class StarView extends View {
      * @param starRating
      */
     public void setStarRating(float starRating) {
+        if (this.starRating == starRating) {
+            return;
+        }
         this.starRating = starRating;
-        invalidate();
+        StarGeometry geometry = drawable.getGeometry();
+        if (geometry.getHalfCount() == 0) {
+            //还没有完成测量，没有可以局部刷新的区域
+            drawable.setStarRating(starRating);
+            invalidate();
+            return;
+        }
+        //进度变化只影响新旧实心边界之间的区域，只刷新这一段
+        int oldSolidRight = geometry.getSolidRight();
+        drawable.setStarRating(starRating);
+        int newSolidRight = geometry.getSolidRight();
+        if (oldSolidRight != newSolidRight) {
+            int top = geometry.getTop();
+            invalidate(Math.min(oldSolidRight, newSolidRight), top,
+                    Math.max(oldSolidRight, newSolidRight), top + geometry.getContentHeight());
+        }
     }
 
     public float getStarRating() {
@@ -223,7 +356,7 @@ public class StarView extends View {
         if ((specMode == MeasureSpec.EXACTLY)) {
             result = specSize;
         } else {
-            result = (int) (getPaddingLeft() + getPaddingRight() + (mSpaceWidth + mStarWidth) * (starMaxNumber));
+            result = getPaddingLeft() + getPaddingRight() + drawable.getIntrinsicWidth();
             if (specMode == MeasureSpec.AT_MOST) {
                 result = Math.min(result, specSize);
             }
@@ -239,7 +372,7 @@ public class StarView extends View {
         if (specMode == MeasureSpec.EXACTLY) {
             result = specSize;
         } else {
-            result = (int) (mStarHeight + getPaddingTop() + getPaddingBottom());
+            result = drawable.getIntrinsicHeight() + getPaddingTop() + getPaddingBottom();
             if (specMode == MeasureSpec.AT_MOST) {
                 result = Math.min(result, specSize);
             }
@@ -252,16 +385,80 @@ public class StarView extends View {
     }
 
     public void setStarMaxNumber(int starMaxNumber) {
+        if (this.starMaxNumber == starMaxNumber) {
+            return;
+        }
         this.starMaxNumber = starMaxNumber;
+        int oldWidth = drawable.getIntrinsicWidth();
+        drawable.setStarMaxNumber(starMaxNumber);
+        //测量宽度取决于星星数量，内容宽度变化时需要重新测量
+        if (drawable.getIntrinsicWidth() != oldWidth) {
+            requestLayout();
+        }
         //利用invalidate()；刷新界面
         invalidate();
     }
 
+    /**
+     * 当前的绘制方式
+     *
+     * @return {@link #RENDERER_BITMAP}、{@link #RENDERER_VECTOR} 或 {@link #RENDERER_TILED}
+     */
+    public int getRenderer() {
+        return drawable.getRenderer();
+    }
+
+    /**
+     * 设置触摸改变进度时的步长
+     *
+     * @param starStep {@link #STEP_HALF}、{@link #STEP_WHOLE} 或 {@link #STEP_CONTINUOUS}
+     */
+    public void setStarStep(int starStep) {
+        this.starStep = starStep;
+    }
+
+    public int getStarStep() {
+        return starStep;
+    }
+
+    /**
+     * 设置进度变化的监听，通过 {@link #setStarRating(float)} 设置的进度不会回调
+     */
+    public void setOnRatingChangeListener(OnRatingChangeListener listener) {
+        mRatingChangeListener = listener;
+    }
+
     public boolean isIndicator() {
         return isIndicator;
     }
 
     public void setIsIndicator(boolean isIndicator) {
         this.isIndicator = isIndicator;
+        drawable.setStripCacheEnabled(isIndicator && stripCache);
+    }
+
+    /**
+     * 设置作为指示器时是否缓存每种进度的绘制结果，配置相同的控件共用缓存，见 {@link StarStripCache}
+     */
+    public void setStripCacheEnabled(boolean stripCache) {
+        this.stripCache = stripCache;
+        drawable.setStripCacheEnabled(isIndicator && stripCache);
+        invalidate();
+    }
+
+    /**
+     * 进度变化的监听，进度的单位与 {@link #getStarRating()} 一致，即半颗星星
+     */
+    public interface OnRatingChangeListener {
+
+        /**
+         * 拖动过程中进度发生变化，每一帧最多回调一次
+         */
+        void onRatingChanging(StarView view, float rating);
+
+        /**
+         * 手指抬起，进度最终确定，只在进度与开始拖动时不同时回调
+         */
+        void onRatingCommitted(StarView view, float rating);
     }
 }